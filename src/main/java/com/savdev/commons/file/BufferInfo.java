@@ -1,12 +1,21 @@
 package com.savdev.commons.file;
 
+import java.nio.ByteBuffer;
+
 public class BufferInfo {
 
-  final char[] buffer;
-  int actualSize; //number of exactly read chars
+  char[] buffer;
+  ByteBuffer bytes; //not decoded input, used instead of buffer in bytes mode
+  int actualSize; //number of exactly read chars or bytes
+  long start; //absolute offset of the 1st char or byte in input
 
   public BufferInfo(char[] buffer, int actualSize) {
+    this(buffer, null, actualSize);
+  }
+
+  public BufferInfo(char[] buffer, ByteBuffer bytes, int actualSize) {
     this.buffer = buffer;
+    this.bytes = bytes;
     this.actualSize = actualSize;
   }
 
@@ -14,16 +23,29 @@ public class BufferInfo {
     return this.actualSize == -1;
   }
 
+  public void buffer(char[] buffer) {
+    this.buffer = buffer;
+  }
+
+  public void bytes(ByteBuffer bytes) {
+    this.bytes = bytes;
+  }
+
   public void actualSize(int actualSize) {
     this.actualSize = actualSize;
   }
 
+  public void start(long start) {
+    this.start = start;
+  }
+
   public static BufferInfoBuilder builder(){
     return new BufferInfoBuilder();
   }
 
   public static class BufferInfoBuilder {
     private char[] buffer;
+    private ByteBuffer bytes;
     private int actualSize;
 
     public BufferInfoBuilder buffer(char[] buffer) {
@@ -31,13 +53,18 @@ public class BufferInfo {
       return this;
     }
 
+    public BufferInfoBuilder bytes(ByteBuffer bytes) {
+      this.bytes = bytes;
+      return this;
+    }
+
     public BufferInfoBuilder actualSize(int actualSize) {
       this.actualSize = actualSize;
       return this;
     }
 
     public BufferInfo build() {
-      return new BufferInfo(buffer, actualSize);
+      return new BufferInfo(buffer, bytes, actualSize);
     }
   }
 }
@@ -0,0 +1,142 @@
+package com.savdev.commons.file;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Chunk arrays of a single buffer size, shared by many readers,
+ *  see CsvReaderBuilder.bufferPool(). Thread safe.
+ *  A reader borrows arrays for its chunks and returns them, when it is closed.
+ *  Returned arrays are kept in free lists, striped by threads to reduce contention,
+ *  a thread borrows from other stripes, if its own one is empty.
+ *  Not more than maxBuffers arrays of every type are kept by all stripes,
+ *  other returned arrays are left to the garbage collector.
+ */
+public class ChunkBufferPool {
+
+  private static final int STRIPES = 8;
+
+  final int bufferSize;
+  final int maxBuffers;
+  private final FreeList<char[]>[] chars;
+  private final FreeList<byte[]>[] bytes;
+  //number of kept arrays of every type, bounded by maxBuffers
+  private final AtomicInteger freeChars = new AtomicInteger();
+  private final AtomicInteger freeBytes = new AtomicInteger();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * @param bufferSize size of every array, must be the buffer size of readers
+   * @param maxBuffers max number of kept arrays of every type
+   */
+  public ChunkBufferPool(final int bufferSize, final int maxBuffers) {
+    if (bufferSize <= 0 || maxBuffers < 0) {
+      throw new IllegalArgumentException(
+        String.format("Buffer size = '%d' must be positive, " +
+          "max buffers = '%d' cannot be negative", bufferSize, maxBuffers));
+    }
+    this.bufferSize = bufferSize;
+    this.maxBuffers = maxBuffers;
+    this.chars = stripes();
+    this.bytes = stripes();
+  }
+
+  /**
+   * @return number of borrowed arrays, taken from free lists
+   */
+  public long hits() {
+    return hits.sum();
+  }
+
+  /**
+   * @return number of borrowed arrays, allocated because free lists were empty
+   */
+  public long misses() {
+    return misses.sum();
+  }
+
+  char[] borrowChars() {
+    char[] result = borrow(chars, freeChars);
+    return result != null ? result : new char[bufferSize];
+  }
+
+  byte[] borrowBytes() {
+    byte[] result = borrow(bytes, freeBytes);
+    return result != null ? result : new byte[bufferSize];
+  }
+
+  void release(final char[] array) {
+    if (array != null && array.length == bufferSize && reserve(freeChars)) {
+      stripe(chars).offer(array);
+    }
+  }
+
+  void release(final byte[] array) {
+    if (array != null && array.length == bufferSize && reserve(freeBytes)) {
+      stripe(bytes).offer(array);
+    }
+  }
+
+  /**
+   * A place is counted before the array is offered,
+   *  so the number of kept arrays never exceeds maxBuffers
+   */
+  private boolean reserve(final AtomicInteger free) {
+    if (free.incrementAndGet() > maxBuffers) {
+      free.decrementAndGet();
+      return false;
+    }
+    return true;
+  }
+
+  private <T> T borrow(final FreeList<T>[] stripes, final AtomicInteger free) {
+    T result = null;
+    //the own stripe first, then others
+    int stripe = stripe();
+    for (int i = 0; result == null && i < STRIPES; i++) {
+      result = stripes[(stripe + i) & (STRIPES - 1)].poll();
+    }
+    if (result == null) {
+      misses.increment();
+    } else {
+      free.decrementAndGet();
+      hits.increment();
+    }
+    return result;
+  }
+
+  //a generic array cannot be created, FreeList erases to the same class
+  @SuppressWarnings("unchecked")
+  private static <T> FreeList<T>[] stripes() {
+    FreeList<T>[] result = (FreeList<T>[]) new FreeList<?>[STRIPES];
+    for (int i = 0; i < STRIPES; i++) {
+      result[i] = new FreeList<>();
+    }
+    return result;
+  }
+
+  private static <T> FreeList<T> stripe(final FreeList<T>[] stripes) {
+    return stripes[stripe()];
+  }
+
+  private static int stripe() {
+    return (int) (Thread.currentThread().getId() & (STRIPES - 1));
+  }
+
+  /**
+   * Stack of free arrays, its size is bounded by the pool
+   */
+  static class FreeList<T> {
+    private final ArrayDeque<T> arrays = new ArrayDeque<>();
+
+    synchronized T poll() {
+      return arrays.pollLast();
+    }
+
+    synchronized void offer(final T array) {
+      arrays.addLast(array);
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package com.savdev.commons.file;
+
+import java.util.function.Consumer;
+
+/**
+ * Array-backed ring of chunk buffers. Used only by Storage.
+ *  Gives O(1) indexed access and O(1) head eviction.
+ *  An evicted slot keeps its BufferInfo with its char (or byte) array,
+ *  the next added chunk reuses them instead of allocating new ones,
+ *  arrays are allocated by ChunkSource, when a slot has none.
+ */
+class ChunkRing {
+
+  private final static int INITIAL_CAPACITY = 4;
+
+  private BufferInfo[] slots = new BufferInfo[INITIAL_CAPACITY];
+  private int head = 0;
+  private int size = 0;
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @param index position relative to the head of the ring
+   */
+  BufferInfo get(final int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException(
+        String.format("Chunk index = '%d', number of chunks = '%d'",
+          index, size));
+    }
+    return slots[(head + index) & (slots.length - 1)];
+  }
+
+  /**
+   * Appends a chunk to the tail, reusing a free slot if possible
+   * @return appended chunk, its actual size is reset to 0
+   */
+  BufferInfo add() {
+    if (size == slots.length) {
+      grow();
+    }
+    int index = (head + size) & (slots.length - 1);
+    BufferInfo bufferInfo = slots[index];
+    if (bufferInfo == null) {
+      bufferInfo = BufferInfo.builder().build();
+      slots[index] = bufferInfo;
+    }
+    bufferInfo.actualSize(0);
+    size++;
+    return bufferInfo;
+  }
+
+  void removeFirst() {
+    if (size == 0) {
+      throw new IllegalStateException("Cannot remove a chunk from empty storage");
+    }
+    head = (head + 1) & (slots.length - 1);
+    size--;
+  }
+
+  void removeLast() {
+    if (size == 0) {
+      throw new IllegalStateException("Cannot remove a chunk from empty storage");
+    }
+    size--;
+  }
+
+  /**
+   * Removes all chunks, arrays of all slots, including free ones,
+   *  are passed to the consumer and are not reused by the ring anymore
+   */
+  void release(final Consumer<BufferInfo> consumer) {
+    for (BufferInfo slot : slots) {
+      if (slot != null) {
+        consumer.accept(slot);
+        slot.buffer(null);
+        slot.bytes(null);
+      }
+    }
+    clear();
+  }
+
+  void clear() {
+    head = 0;
+    size = 0;
+  }
+
+  //capacity is always a power of 2, so index wrapping is a simple mask
+  private void grow() {
+    BufferInfo[] newSlots = new BufferInfo[slots.length << 1];
+    for (int i = 0; i < size; i++) {
+      newSlots[i] = slots[(head + i) & (slots.length - 1)];
+    }
+    slots = newSlots;
+    head = 0;
+  }
+}
@@ -0,0 +1,29 @@
+package com.savdev.commons.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Fills Storage chunks with input data. Used only by Storage.
+ *  A source allocates a chunk array only if the chunk slot has none,
+ *  or replaces the chunk buffer with its own one.
+ *  A source with its own buffer can also move the chunk start back,
+ *  the chars before the requested offset are skipped.
+ */
+interface ChunkSource extends Closeable {
+
+  /**
+   * @param chunk a chunk to fill
+   * @param offset the 1st position in the chunk to fill
+   * @param length max number of chars or bytes to read
+   * @return number of read chars or bytes, -1 if there is no more data
+   */
+  int read(BufferInfo chunk, int offset, int length) throws IOException;
+
+  /**
+   * @return absolute offset of the 1st char or byte, returned by the source
+   */
+  default long offset() {
+    return 0;
+  }
+}
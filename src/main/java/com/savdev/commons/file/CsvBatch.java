@@ -0,0 +1,306 @@
+package com.savdev.commons.file;
+
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Up to rowsPerBatch csv records as column vectors, reused for all batches.
+ *  A column, declared as INT, LONG, DECIMAL (unscaled) or DATE (epoch day),
+ *  is a long[] vector, DOUBLE - a double[] vector, other columns are
+ *  strings: chars of all values in a shared char[] and offsets of every value.
+ *  A dictionary column is an int[] vector of dictionary codes.
+ *  An empty value is null, its bit is set in the null bitmap of the column.
+ *  Vectors are filled directly from Storage chunks and are valid until next().
+ */
+public class CsvBatch {
+
+  final CsvReader reader;
+  final int rowsPerBatch;
+  int size = 0; //number of rows in the current batch
+  //calculated from the header by the 1st next():
+  int[] fields; //tokenizer fields of batch columns
+  String[] columnNames;
+  Map<String, Integer> columnIndexes;
+  Vector[] vectors;
+  final FieldSlice slice = new FieldSlice();
+  //typed vectors keep original text too, see CsvColumnarCache
+  final boolean keepText;
+
+  CsvBatch(final CsvReader reader, final int rowsPerBatch) {
+    this(reader, rowsPerBatch, false);
+  }
+
+  CsvBatch(final CsvReader reader, final int rowsPerBatch, final boolean keepText) {
+    if (rowsPerBatch <= 0) {
+      throw new IllegalArgumentException(
+        String.format("Rows per batch = '%d' must be positive", rowsPerBatch));
+    }
+    this.reader = reader;
+    this.rowsPerBatch = rowsPerBatch;
+    this.keepText = keepText;
+  }
+
+  /**
+   * Fills vectors by the next records
+   * @return false if there are no more records
+   */
+  public boolean next() {
+    index();
+    for (Vector vector : vectors) {
+      vector.clear();
+    }
+    size = 0;
+    while (size < rowsPerBatch && reader.nextRecord()) {
+      for (int i = 0; i < fields.length; i++) {
+        vectors[i].add(size, reader.tokenizer.slice(fields[i], slice));
+      }
+      size++;
+    }
+    return size > 0;
+  }
+
+  /**
+   * @return number of rows in the current batch, vectors may be longer
+   */
+  public int size() {
+    return size;
+  }
+
+  public int columns() {
+    index();
+    return columnNames.length;
+  }
+
+  public String columnName(final int columnIndex) {
+    return vector(columnIndex).column.columnName;
+  }
+
+  /**
+   * @return index of the column, or -1 if there is no such column
+   */
+  public int columnIndex(final String columnName) {
+    index();
+    Integer result = columnIndexes.get(columnName);
+    return result != null ? result : -1;
+  }
+
+  public long[] longs(final int columnIndex) {
+    Vector vector = vector(columnIndex);
+    if (vector.longs == null) {
+      throw notVector(vector, "long");
+    }
+    return vector.longs;
+  }
+
+  public double[] doubles(final int columnIndex) {
+    Vector vector = vector(columnIndex);
+    if (vector.doubles == null) {
+      throw notVector(vector, "double");
+    }
+    return vector.doubles;
+  }
+
+  /**
+   * @return chars of all string values of the column,
+   *  see offsets() for boundaries of values
+   */
+  public char[] chars(final int columnIndex) {
+    Vector vector = vector(columnIndex);
+    if (vector.offsets == null) {
+      throw notVector(vector, "string");
+    }
+    return vector.chars;
+  }
+
+  /**
+   * @return the value of a row starts at offsets[row]
+   *  and ends at offsets[row + 1] in chars()
+   */
+  public int[] offsets(final int columnIndex) {
+    Vector vector = vector(columnIndex);
+    if (vector.offsets == null) {
+      throw notVector(vector, "string");
+    }
+    return vector.offsets;
+  }
+
+  /**
+   * @return codes of values of a dictionary column, see dictionary()
+   */
+  public int[] codes(final int columnIndex) {
+    Vector vector = vector(columnIndex);
+    if (vector.codes == null) {
+      throw notVector(vector, "dictionary");
+    }
+    return vector.codes;
+  }
+
+  public CsvDictionary dictionary(final int columnIndex) {
+    Vector vector = vector(columnIndex);
+    if (vector.codes == null) {
+      throw notVector(vector, "dictionary");
+    }
+    return vector.column.dictionary;
+  }
+
+  /**
+   * @return bit of a row is set, if its value is empty,
+   *  the bit of the row i is (nulls[i >> 6] >>> i) & 1
+   */
+  public long[] nulls(final int columnIndex) {
+    return vector(columnIndex).nulls;
+  }
+
+  public boolean isNull(final int columnIndex, final int row) {
+    checkRow(row);
+    return (vector(columnIndex).nulls[row >> 6] & 1L << row) != 0;
+  }
+
+  /**
+   * @return an owned copy of a string value,
+   *  the canonical instance for a dictionary column
+   */
+  public String string(final int columnIndex, final int row) {
+    checkRow(row);
+    Vector vector = vector(columnIndex);
+    if (vector.codes != null) {
+      return vector.column.dictionary.value(vector.codes[row]);
+    }
+    int[] offsets = offsets(columnIndex);
+    return new String(chars(columnIndex),
+      offsets[row], offsets[row + 1] - offsets[row]);
+  }
+
+  private void index() {
+    if (vectors != null) {
+      return;
+    }
+    if (!reader.headerCalculated) {
+      reader.calculateHeaders();
+    }
+    fields = reader.projection;
+    columnNames = new String[fields.length];
+    columnIndexes = Maps.newHashMapWithExpectedSize(fields.length);
+    vectors = new Vector[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      CsvColumnMetadata column = reader.csvHeader.get(fields[i]);
+      columnNames[i] = column.columnName;
+      columnIndexes.put(column.columnName, i);
+      vectors[i] = new Vector(column, rowsPerBatch, keepText);
+    }
+  }
+
+  private Vector vector(final int columnIndex) {
+    index();
+    if (columnIndex < 0 || columnIndex >= vectors.length) {
+      throw new IllegalArgumentException(
+        String.format("Column index = '%d' is out of the header range, columns = '%d'",
+          columnIndex, vectors.length));
+    }
+    return vectors[columnIndex];
+  }
+
+  private void checkRow(final int row) {
+    if (row < 0 || row >= size) {
+      throw new IllegalArgumentException(
+        String.format("Row = '%d' is out of the batch, size = '%d'", row, size));
+    }
+  }
+
+  private static IllegalStateException notVector(
+    final Vector vector,
+    final String type) {
+    return new IllegalStateException(
+      String.format("Column = '%s' of type = '%s' is not a %s vector",
+        vector.column.columnName, vector.column.type, type));
+  }
+
+  /**
+   * Values of a column, only one of longs, doubles, codes or chars is used
+   */
+  static class Vector {
+    final CsvColumnMetadata column;
+    final long[] nulls;
+    long[] longs;
+    double[] doubles;
+    int[] codes;
+    char[] chars;
+    int[] offsets;
+
+    /**
+     * @param keepText chars and offsets keep values of a typed column too
+     */
+    Vector(final CsvColumnMetadata column, final int rows, final boolean keepText) {
+      this.column = column;
+      this.nulls = new long[(rows + 63) >> 6];
+      CsvColumnType type = column.type != null ? column.type : CsvColumnType.STRING;
+      switch (type) {
+        case INT:
+        case LONG:
+        case DECIMAL:
+        case DATE:
+          longs = new long[rows];
+          break;
+        case DOUBLE:
+          doubles = new double[rows];
+          break;
+        default:
+          if (column.dictionary != null) {
+            codes = new int[rows];
+          }
+      }
+      if (codes == null && (keepText || longs == null && doubles == null)) {
+        chars = new char[rows * 8];
+        offsets = new int[rows + 1];
+      }
+    }
+
+    void clear() {
+      Arrays.fill(nulls, 0);
+    }
+
+    void add(final int row, final FieldSlice value) {
+      int length = value.length();
+      if (length == 0) {
+        nulls[row >> 6] |= 1L << row;
+      }
+      if (codes != null) {
+        codes[row] = column.dictionary.code(value);
+        return;
+      }
+      if (offsets != null) {
+        int offset = offsets[row];
+        if (offset + length > chars.length) {
+          chars = Arrays.copyOf(chars, Math.max(offset + length, chars.length << 1));
+        }
+        value.getChars(chars, offset);
+        offsets[row + 1] = offset + length;
+      }
+      if (longs == null && doubles == null) {
+        return;
+      }
+      if (length == 0) {
+        if (longs != null) {
+          longs[row] = 0;
+        } else {
+          doubles[row] = 0;
+        }
+      } else if (doubles != null) {
+        doubles[row] = FieldDecoder.parseDouble(value);
+      } else {
+        switch (column.type) {
+          case DECIMAL:
+            longs[row] = FieldDecoder.parseDecimal(value, column.scale);
+            break;
+          case DATE:
+            longs[row] = FieldDecoder.parseEpochDay(value, column.pattern);
+            break;
+          default:
+            longs[row] = FieldDecoder.parseLong(value);
+        }
+      }
+    }
+  }
+}
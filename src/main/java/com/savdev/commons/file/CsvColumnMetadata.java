@@ -7,12 +7,30 @@ public class CsvColumnMetadata {
   final String columnName;
   String startSeparator;
   String endSeparator;
+  //optional type declaration, used by typed accessors of CsvRow:
+  CsvColumnType type;
+  int scale; //for DECIMAL
+  String pattern; //for DATE
+  //canonical values of a low cardinality column, null if not declared:
+  CsvDictionary dictionary;
 
   public CsvColumnMetadata(
     final int columnPosition,
     final String columnName,
     final String startSeparator,
     final String endSeparator) {
+    this(columnPosition, columnName, startSeparator, endSeparator,
+      null, 0, null);
+  }
+
+  public CsvColumnMetadata(
+    final int columnPosition,
+    final String columnName,
+    final String startSeparator,
+    final String endSeparator,
+    final CsvColumnType type,
+    final int scale,
+    final String pattern) {
     if(columnPosition < 0){
       throw new IllegalArgumentException(
         String.format("Csv header position = '%d' cannot be negative",
@@ -22,6 +40,9 @@ public class CsvColumnMetadata {
     this.columnName = columnName;
     this.startSeparator = startSeparator;
     this.endSeparator = endSeparator;
+    this.type = type;
+    this.scale = scale;
+    this.pattern = pattern;
   }
 
   public void setStartSeparator(
@@ -57,6 +78,10 @@ public class CsvColumnMetadata {
     private String columnName;
     private String startSeparator = "";
     private String endSeparator = "";
+    private CsvColumnType type;
+    private int scale;
+    private String pattern;
+    private CsvDictionary dictionary;
 
     public CsvColumnMetadataBuilder position(int columnPosition) {
       this.columnPosition = columnPosition;
@@ -78,12 +103,37 @@ public class CsvColumnMetadata {
       return this;
     }
 
+    public CsvColumnMetadataBuilder type(CsvColumnType type) {
+      this.type = type;
+      return this;
+    }
+
+    public CsvColumnMetadataBuilder scale(int scale) {
+      this.scale = scale;
+      return this;
+    }
+
+    public CsvColumnMetadataBuilder pattern(String pattern) {
+      this.pattern = pattern;
+      return this;
+    }
+
+    public CsvColumnMetadataBuilder dictionary(CsvDictionary dictionary) {
+      this.dictionary = dictionary;
+      return this;
+    }
+
     public CsvColumnMetadata build() {
-      return new CsvColumnMetadata(
+      CsvColumnMetadata result = new CsvColumnMetadata(
         columnPosition,
         columnName,
         startSeparator,
-        endSeparator);
+        endSeparator,
+        type,
+        scale,
+        pattern);
+      result.dictionary = dictionary;
+      return result;
     }
   }
 }
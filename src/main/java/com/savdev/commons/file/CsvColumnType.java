@@ -0,0 +1,13 @@
+package com.savdev.commons.file;
+
+/**
+ * Declared type of a csv column, see CsvReaderBuilder.columnType()
+ */
+public enum CsvColumnType {
+  STRING,
+  INT,
+  LONG,
+  DOUBLE,
+  DECIMAL, //fixed point number with a declared scale
+  DATE //a date with a declared pattern
+}
@@ -0,0 +1,837 @@
+package com.savdev.commons.file;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.CountingOutputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A csv file, compiled into a binary columnar file, for repeated reads
+ *  without tokenizing. Selected columns of the reader are kept by blocks
+ *  of BLOCK_ROWS rows: INT, LONG, DECIMAL and DATE columns as long vectors,
+ *  DOUBLE columns as double vectors, both with min and max of a block,
+ *  dictionary columns of the reader as codes of a dictionary of the column,
+ *  other string columns as offsets and chars of their values.
+ *  A block is memory mapped, when it is requested.
+ *  The cache is bound to the path, size and modification time of the csv file
+ *  and to the projection, declared column types and filters of the reader,
+ *  a stale cache is compiled again. If only the modification time differs,
+ *  a hash of the whole file decides, otherwise a hash of sampled blocks.
+ *  Filters are predicates, that cannot be compared with the ones of the cache,
+ *  so the cache of a filtered reader is compiled on every open().
+ *  Values are returned as text, the same as the reader returns them:
+ *  if a typed value of a block is not formatted back to its text,
+ *  for instance a DOUBLE value "1.50", text of the column is kept in the block.
+ */
+public class CsvColumnarCache implements Closeable {
+
+  static final int BLOCK_ROWS = 8192;
+  private static final int MAGIC = 0x43535643; //CSVC
+  private static final int VERSION = 3;
+  //mapped window of the csv file, hashed to detect a change:
+  private static final int HASH_WINDOW_SIZE = 64 * 1024 * 1024;
+  //blocks of the csv file, hashed when its modification time is not changed:
+  private static final int SAMPLES = 64;
+  private static final int SAMPLE_SIZE = 4096;
+
+  //kinds of column vectors:
+  static final int LONGS = 0;
+  static final int DOUBLES = 1;
+  static final int CODES = 2;
+  static final int TEXT = 3;
+
+  final FileChannel channel;
+  final String[] columnNames;
+  final Map<String, Integer> columnIndexes;
+  final CsvColumnType[] types; //null - a not declared string column
+  final int[] scales;
+  final String[] patterns;
+  final int[] kinds;
+  final CsvDictionary[] dictionaries; //only for CODES columns
+  final long rows;
+  final long[] blockOffsets; //the last one is the end of the last block
+
+  private CsvColumnarCache(
+    final FileChannel channel,
+    final DataInputStream footer,
+    final long[] dictionaryOffsets) throws IOException {
+    this.channel = channel;
+    int columns = footer.readInt();
+    this.columnNames = new String[columns];
+    this.columnIndexes = Maps.newHashMapWithExpectedSize(columns);
+    this.types = new CsvColumnType[columns];
+    this.scales = new int[columns];
+    this.patterns = new String[columns];
+    this.kinds = new int[columns];
+    this.dictionaries = new CsvDictionary[columns];
+    for (int i = 0; i < columns; i++) {
+      columnNames[i] = footer.readUTF();
+      columnIndexes.put(columnNames[i], i);
+      int type = footer.readInt();
+      types[i] = type == -1 ? null : CsvColumnType.values()[type];
+      scales[i] = footer.readInt();
+      String pattern = footer.readUTF();
+      patterns[i] = pattern.isEmpty() ? null : pattern;
+      kinds[i] = footer.readInt();
+    }
+    this.rows = footer.readLong();
+    this.blockOffsets = new long[footer.readInt() + 1];
+    for (int i = 0; i < blockOffsets.length; i++) {
+      blockOffsets[i] = footer.readLong();
+    }
+    for (int i = 0; i < columns; i++) {
+      dictionaryOffsets[i] = footer.readLong();
+    }
+  }
+
+  /**
+   * Opens the cache of the csv file, it is compiled by the reader,
+   *  if it is missing or stale
+   * @param reader of a memory mapped file, it is closed
+   */
+  public static CsvColumnarCache open(final CsvReader reader, final Path cache) {
+    if (reader.path == null) {
+      throw new IllegalArgumentException(
+        "Only a memory mapped file can be cached");
+    }
+    try {
+      Source source = Source.of(reader.path, fingerprint(reader));
+      CsvColumnarCache result = reader.filters.isEmpty()
+        ? read(cache, source)
+        : null;
+      if (result == null) {
+        compile(reader, cache, source.hashed());
+        result = read(cache, source);
+      }
+      return result;
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      reader.close();
+    }
+  }
+
+  public long rows() {
+    return rows;
+  }
+
+  public int columns() {
+    return columnNames.length;
+  }
+
+  public String columnName(final int columnIndex) {
+    checkColumn(columnIndex);
+    return columnNames[columnIndex];
+  }
+
+  /**
+   * @return index of the column, or -1 if there is no such column
+   */
+  public int columnIndex(final String columnName) {
+    Integer result = columnIndexes.get(columnName);
+    return result != null ? result : -1;
+  }
+
+  /**
+   * @return the dictionary of a dictionary column of the reader
+   */
+  public CsvDictionary dictionary(final int columnIndex) {
+    checkColumn(columnIndex);
+    if (dictionaries[columnIndex] == null) {
+      throw new IllegalStateException(
+        String.format("Column = '%s' is not a dictionary column", columnNames[columnIndex]));
+    }
+    return dictionaries[columnIndex];
+  }
+
+  public int blocks() {
+    return blockOffsets.length - 1;
+  }
+
+  /**
+   * Maps and decodes a block of rows
+   */
+  public Block block(final int index) {
+    if (index < 0 || index >= blocks()) {
+      throw new IllegalArgumentException(
+        String.format("Block = '%d' is out of the cache, blocks = '%d'", index, blocks()));
+    }
+    try {
+      return new Block(channel.map(FileChannel.MapMode.READ_ONLY,
+        blockOffsets[index], blockOffsets[index + 1] - blockOffsets[index]));
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Rows as CsvReader.csvLines() returns them
+   */
+  public Stream<Map<String, String>> csvLines() {
+    return IntStream.range(0, blocks())
+      .mapToObj(this::block)
+      .flatMap(block -> IntStream.range(0, block.size).mapToObj(block::toMap));
+  }
+
+  /**
+   * Pushes rows to the handler as CsvReader.parse() does
+   * @return number of rows passed to the handler
+   */
+  public long parse(final CsvHandler handler) {
+    handler.header(columnNames.clone());
+    long result = 0;
+    for (int b = 0; b < blocks(); b++) {
+      Block block = block(b);
+      for (int row = 0; row < block.size; row++) {
+        handler.startRecord();
+        for (int i = 0; i < columnNames.length; i++) {
+          handler.field(i, block.string(i, row));
+        }
+        result++;
+        if (!handler.endRecord()) {
+          return result;
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void close() {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void checkColumn(final int columnIndex) {
+    if (columnIndex < 0 || columnIndex >= columnNames.length) {
+      throw new IllegalArgumentException(
+        String.format("Column index = '%d' is out of the header range, columns = '%d'",
+          columnIndex, columnNames.length));
+    }
+  }
+
+  private static int kind(final CsvColumnMetadata column) {
+    if (column.dictionary != null) {
+      return CODES;
+    }
+    if (column.type == null || column.type == CsvColumnType.STRING) {
+      return TEXT;
+    }
+    return column.type == CsvColumnType.DOUBLE ? DOUBLES : LONGS;
+  }
+
+  /**
+   * @return a hash of the reader settings, the cache depends on
+   */
+  static long fingerprint(final CsvReader reader) {
+    StringBuilder result = new StringBuilder()
+      .append(reader.encoding.name()).append('\n')
+      .append(reader.csvLineSeparator).append('\n')
+      .append(reader.csvColumnSeparator).append('\n')
+      .append(reader.selectedNames != null
+        ? String.join("\n", reader.selectedNames)
+        : Arrays.toString(reader.selectedIndexes)).append('\n');
+    reader.columnTypes.values().stream()
+      .sorted(Comparator.comparing(c -> c.columnName))
+      .forEach(c -> result.append(c.columnName).append(':').append(c.type)
+        .append(':').append(c.scale).append(':').append(c.pattern).append('\n'));
+    new TreeSet<>(reader.dictionaryColumns)
+      .forEach(c -> result.append(c).append(":dictionary\n"));
+    new TreeSet<>(reader.filters.keySet())
+      .forEach(c -> result.append(c).append(":filter\n"));
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < result.length(); i++) {
+      hash = (hash ^ result.charAt(i)) * 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  /**
+   * @return the cache, null if it is missing or is stale
+   */
+  private static CsvColumnarCache read(final Path cache, final Source source)
+    throws IOException {
+    if (!Files.exists(cache)) {
+      return null;
+    }
+    FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ);
+    try {
+      ByteBuffer bytes = ByteBuffer.allocate(8);
+      if (channel.size() < 16
+        || channel.read(bytes, 0) != 8
+        || bytes.getInt(0) != MAGIC
+        || bytes.getInt(4) != VERSION) {
+        channel.close();
+        return null;
+      }
+      bytes.clear();
+      channel.read(bytes, channel.size() - 8);
+      channel.position(bytes.getLong(0));
+      //the stream is not closed, it would close the channel
+      DataInputStream footer = new DataInputStream(
+        new BufferedInputStream(Channels.newInputStream(channel)));
+      long footerOffset = channel.position();
+      Source cached = Source.read(footer);
+      if (!source.isCompiledAs(cached)) {
+        channel.close();
+        return null;
+      }
+      if (source.lastModified != cached.lastModified) {
+        //the same content, the hash is not calculated by the next open()
+        try (FileChannel update = FileChannel.open(cache, StandardOpenOption.WRITE)) {
+          update.write(ByteBuffer.allocate(8)
+            .putLong(0, source.lastModified), footerOffset + 8);
+        }
+      }
+      long[] dictionaryOffsets = new long[footer.readInt()];
+      CsvColumnarCache result = new CsvColumnarCache(channel, footer, dictionaryOffsets);
+      for (int i = 0; i < dictionaryOffsets.length; i++) {
+        if (dictionaryOffsets[i] != -1) {
+          channel.position(dictionaryOffsets[i]);
+          result.dictionaries[i] = readDictionary(new DataInputStream(
+            new BufferedInputStream(Channels.newInputStream(channel))));
+        }
+      }
+      return result;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private static CsvDictionary readDictionary(final DataInputStream input)
+    throws IOException {
+    CsvDictionary result = new CsvDictionary();
+    int size = input.readInt();
+    char[] chars = new char[16];
+    for (int i = 0; i < size; i++) {
+      int length = input.readInt();
+      if (chars.length < length) {
+        chars = new char[Math.max(length, chars.length << 1)];
+      }
+      for (int c = 0; c < length; c++) {
+        chars[c] = input.readChar();
+      }
+      //values are added in the order of their codes
+      result.code(new String(chars, 0, length));
+    }
+    return result;
+  }
+
+  /**
+   * Reads all records by batches, every batch is a block
+   */
+  private static void compile(final CsvReader reader, final Path cache, final Source source)
+    throws IOException {
+    CsvBatch batch = new CsvBatch(reader, BLOCK_ROWS, true);
+    //vectors are created by the 1st next()
+    boolean more = batch.next();
+    int columns = batch.columns();
+    CsvDictionary[] dictionaries = new CsvDictionary[columns];
+    for (int i = 0; i < columns; i++) {
+      if (kind(batch.vectors[i].column) == CODES) {
+        dictionaries[i] = new CsvDictionary();
+      }
+    }
+    List<Long> blockOffsets = Lists.newArrayList();
+    long rows = 0;
+    FieldSlice slice = new FieldSlice();
+    Path temp = cache.resolveSibling(cache.getFileName() + ".tmp");
+    CountingOutputStream counting = new CountingOutputStream(
+      new BufferedOutputStream(Files.newOutputStream(temp)));
+    try (DataOutputStream output = new DataOutputStream(counting)) {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      for (; more; more = batch.next()) {
+        blockOffsets.add(counting.getCount());
+        int size = batch.size();
+        output.writeInt(size);
+        for (int i = 0; i < columns; i++) {
+          long[] nulls = batch.nulls(i);
+          for (int n = 0; n < (size + 63) >> 6; n++) {
+            output.writeLong(nulls[n]);
+          }
+          CsvBatch.Vector vector = batch.vectors[i];
+          if (dictionaries[i] != null) {
+            for (int row = 0; row < size; row++) {
+              output.writeInt(vector.codes != null
+                ? dictionaries[i].code(vector.column.dictionary.value(vector.codes[row]))
+                : dictionaries[i].code(slice.wrap(vector.chars,
+                  vector.offsets[row], vector.offsets[row + 1] - vector.offsets[row])));
+            }
+          } else if (vector.longs == null && vector.doubles == null) {
+            writeChars(output, vector, size);
+          } else if (vector.doubles != null) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int row = 0; row < size; row++) {
+              if ((nulls[row >> 6] & 1L << row) == 0) {
+                min = Math.min(min, vector.doubles[row]);
+                max = Math.max(max, vector.doubles[row]);
+              }
+            }
+            output.writeDouble(min);
+            output.writeDouble(max);
+            for (int row = 0; row < size; row++) {
+              output.writeDouble(vector.doubles[row]);
+            }
+            writeText(output, vector, size, slice);
+          } else {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int row = 0; row < size; row++) {
+              if ((nulls[row >> 6] & 1L << row) == 0) {
+                min = Math.min(min, vector.longs[row]);
+                max = Math.max(max, vector.longs[row]);
+              }
+            }
+            output.writeLong(min);
+            output.writeLong(max);
+            for (int row = 0; row < size; row++) {
+              output.writeLong(vector.longs[row]);
+            }
+            writeText(output, vector, size, slice);
+          }
+        }
+        rows += size;
+      }
+      blockOffsets.add(counting.getCount());
+      long[] dictionaryOffsets = new long[columns];
+      for (int i = 0; i < columns; i++) {
+        dictionaryOffsets[i] = dictionaries[i] != null ? counting.getCount() : -1;
+        if (dictionaries[i] != null) {
+          output.writeInt(dictionaries[i].size());
+          for (int code = 0; code < dictionaries[i].size(); code++) {
+            String value = dictionaries[i].value(code);
+            output.writeInt(value.length());
+            output.writeChars(value);
+          }
+        }
+      }
+      long footerOffset = counting.getCount();
+      source.write(output);
+      //number of dictionary offsets, then number of columns:
+      output.writeInt(columns);
+      output.writeInt(columns);
+      for (int i = 0; i < columns; i++) {
+        CsvColumnMetadata column = batch.vectors[i].column;
+        output.writeUTF(column.columnName);
+        output.writeInt(column.type != null ? column.type.ordinal() : -1);
+        output.writeInt(column.scale);
+        output.writeUTF(column.pattern != null ? column.pattern : "");
+        output.writeInt(kind(column));
+      }
+      output.writeLong(rows);
+      output.writeInt(blockOffsets.size() - 1);
+      for (long offset : blockOffsets) {
+        output.writeLong(offset);
+      }
+      for (long offset : dictionaryOffsets) {
+        output.writeLong(offset);
+      }
+      output.writeLong(footerOffset);
+    }
+    Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Writes false, if every not empty value of a typed vector is formatted
+   *  back to its text, otherwise true, offsets and chars of the text
+   */
+  private static void writeText(
+    final DataOutputStream output,
+    final CsvBatch.Vector vector,
+    final int size,
+    final FieldSlice slice) throws IOException {
+    CsvColumnMetadata column = vector.column;
+    boolean exact = true;
+    for (int row = 0; row < size && exact; row++) {
+      if ((vector.nulls[row >> 6] & 1L << row) == 0) {
+        String formatted = vector.doubles != null
+          ? Double.toString(vector.doubles[row])
+          : format(column.type, column.scale, column.pattern, vector.longs[row]);
+        exact = formatted.contentEquals(slice.wrap(vector.chars,
+          vector.offsets[row], vector.offsets[row + 1] - vector.offsets[row]));
+      }
+    }
+    output.writeBoolean(!exact);
+    if (!exact) {
+      writeChars(output, vector, size);
+    }
+  }
+
+  private static void writeChars(
+    final DataOutputStream output,
+    final CsvBatch.Vector vector,
+    final int size) throws IOException {
+    for (int row = 0; row <= size; row++) {
+      output.writeInt(vector.offsets[row]);
+    }
+    for (int c = 0; c < vector.offsets[size]; c++) {
+      output.writeChar(vector.chars[c]);
+    }
+  }
+
+  /**
+   * @return text of a value of a long vector
+   */
+  static String format(
+    final CsvColumnType type,
+    final int scale,
+    final String pattern,
+    final long value) {
+    if (type == CsvColumnType.DECIMAL) {
+      return BigDecimal.valueOf(value, scale).toPlainString();
+    }
+    if (type == CsvColumnType.DATE) {
+      return formatEpochDay(value, pattern);
+    }
+    return Long.toString(value);
+  }
+
+  /**
+   * Decoded vectors of a block, in the same layout as CsvBatch vectors
+   */
+  public class Block {
+    final int size;
+    final long[][] nulls;
+    final long[][] longs;
+    final double[][] doubles;
+    final int[][] codes;
+    //min and max of long or double columns, as raw bits of doubles:
+    final long[] min;
+    final long[] max;
+    //text of TEXT columns and of typed ones, not formatted back from their values:
+    final int[][] textOffsets;
+    final char[][] textChars;
+
+    Block(final ByteBuffer buffer) {
+      int columns = columnNames.length;
+      this.size = buffer.getInt();
+      this.nulls = new long[columns][];
+      this.longs = new long[columns][];
+      this.doubles = new double[columns][];
+      this.codes = new int[columns][];
+      this.min = new long[columns];
+      this.max = new long[columns];
+      this.textOffsets = new int[columns][];
+      this.textChars = new char[columns][];
+      for (int i = 0; i < columns; i++) {
+        nulls[i] = new long[(size + 63) >> 6];
+        buffer.asLongBuffer().get(nulls[i]);
+        buffer.position(buffer.position() + (nulls[i].length << 3));
+        if (kinds[i] == CODES) {
+          codes[i] = new int[size];
+          buffer.asIntBuffer().get(codes[i]);
+          buffer.position(buffer.position() + (size << 2));
+          continue;
+        }
+        if (kinds[i] == TEXT) {
+          readChars(buffer, i);
+          continue;
+        }
+        min[i] = buffer.getLong();
+        max[i] = buffer.getLong();
+        if (kinds[i] == DOUBLES) {
+          doubles[i] = new double[size];
+          buffer.asDoubleBuffer().get(doubles[i]);
+        } else {
+          longs[i] = new long[size];
+          buffer.asLongBuffer().get(longs[i]);
+        }
+        buffer.position(buffer.position() + (size << 3));
+        if (buffer.get() != 0) {
+          readChars(buffer, i);
+        }
+      }
+    }
+
+    private void readChars(final ByteBuffer buffer, final int columnIndex) {
+      textOffsets[columnIndex] = new int[size + 1];
+      buffer.asIntBuffer().get(textOffsets[columnIndex]);
+      buffer.position(buffer.position() + ((size + 1) << 2));
+      textChars[columnIndex] = new char[textOffsets[columnIndex][size]];
+      buffer.asCharBuffer().get(textChars[columnIndex]);
+      buffer.position(buffer.position() + (textChars[columnIndex].length << 1));
+    }
+
+    public int size() {
+      return size;
+    }
+
+    /**
+     * @return INT, LONG, unscaled DECIMAL or epoch day DATE values
+     */
+    public long[] longs(final int columnIndex) {
+      return vector(longs, columnIndex, "long");
+    }
+
+    public double[] doubles(final int columnIndex) {
+      return vector(doubles, columnIndex, "double");
+    }
+
+    /**
+     * @return codes of dictionary column values, see CsvColumnarCache.dictionary()
+     */
+    public int[] codes(final int columnIndex) {
+      return vector(codes, columnIndex, "code");
+    }
+
+    /**
+     * @return the bit of a row is set, if its value is empty,
+     *  the bit of the row i is (nulls[i >> 6] >>> i) & 1
+     */
+    public long[] nulls(final int columnIndex) {
+      checkColumn(columnIndex);
+      return nulls[columnIndex];
+    }
+
+    public boolean isNull(final int columnIndex, final int row) {
+      checkRow(row);
+      return (nulls(columnIndex)[row >> 6] & 1L << row) != 0;
+    }
+
+    /**
+     * @return min of not empty values of a long column in the block,
+     *  Long.MAX_VALUE if all values are empty
+     */
+    public long minLong(final int columnIndex) {
+      longs(columnIndex);
+      return min[columnIndex];
+    }
+
+    public long maxLong(final int columnIndex) {
+      longs(columnIndex);
+      return max[columnIndex];
+    }
+
+    /**
+     * @return min of not empty values of a double column in the block,
+     *  positive infinity if all values are empty
+     */
+    public double minDouble(final int columnIndex) {
+      doubles(columnIndex);
+      return Double.longBitsToDouble(min[columnIndex]);
+    }
+
+    public double maxDouble(final int columnIndex) {
+      doubles(columnIndex);
+      return Double.longBitsToDouble(max[columnIndex]);
+    }
+
+    /**
+     * @return the value as text, an empty value is an empty string
+     */
+    public String string(final int columnIndex, final int row) {
+      if (isNull(columnIndex, row) && kinds[columnIndex] != CODES) {
+        return "";
+      }
+      if (textChars[columnIndex] != null) {
+        int[] offsets = textOffsets[columnIndex];
+        return new String(textChars[columnIndex],
+          offsets[row], offsets[row + 1] - offsets[row]);
+      }
+      switch (kinds[columnIndex]) {
+        case CODES:
+          return dictionaries[columnIndex].value(codes[columnIndex][row]);
+        case DOUBLES:
+          return Double.toString(doubles[columnIndex][row]);
+        default:
+          return format(types[columnIndex], scales[columnIndex],
+            patterns[columnIndex], longs[columnIndex][row]);
+      }
+    }
+
+    public Map<String, String> toMap(final int row) {
+      Map<String, String> result = Maps.newHashMapWithExpectedSize(columnNames.length);
+      for (int i = 0; i < columnNames.length; i++) {
+        result.put(columnNames[i], string(i, row));
+      }
+      return result;
+    }
+
+    private <T> T vector(final T[] vectors, final int columnIndex, final String kind) {
+      checkColumn(columnIndex);
+      if (vectors[columnIndex] == null) {
+        throw new IllegalStateException(
+          String.format("Column = '%s' of type = '%s' is not a %s vector",
+            columnNames[columnIndex], types[columnIndex], kind));
+      }
+      return vectors[columnIndex];
+    }
+
+    private void checkRow(final int row) {
+      if (row < 0 || row >= size) {
+        throw new IllegalArgumentException(
+          String.format("Row = '%d' is out of the block, size = '%d'", row, size));
+      }
+    }
+  }
+
+  /**
+   * The reverse of FieldDecoder.parseEpochDay()
+   */
+  static String formatEpochDay(final long epochDay, final String pattern) {
+    LocalDate date = LocalDate.ofEpochDay(epochDay);
+    int year = date.getYear();
+    int month = date.getMonthValue();
+    int day = date.getDayOfMonth();
+    char[] result = pattern.toCharArray();
+    for (int i = result.length - 1; i >= 0; i--) {
+      if (result[i] == 'y') {
+        result[i] = (char) ('0' + year % 10);
+        year /= 10;
+      } else if (result[i] == 'M') {
+        result[i] = (char) ('0' + month % 10);
+        month /= 10;
+      } else if (result[i] == 'd') {
+        result[i] = (char) ('0' + day % 10);
+        day /= 10;
+      }
+    }
+    return new String(result);
+  }
+
+  /**
+   * The csv file, the cache is compiled from, and the reader settings
+   */
+  static class Source {
+    final Path file;
+    final long size;
+    final long lastModified;
+    final long fingerprint;
+    long sampleHash;
+    long contentHash;
+
+    Source(final Path file, final long size, final long lastModified, final long fingerprint) {
+      this.file = file;
+      this.size = size;
+      this.lastModified = lastModified;
+      this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @return the source without hashes, they are calculated on request
+     */
+    static Source of(final Path file, final long fingerprint) throws IOException {
+      return new Source(
+        file.toAbsolutePath(),
+        Files.size(file),
+        Files.getLastModifiedTime(file).toMillis(),
+        fingerprint);
+    }
+
+    /**
+     * The modification time is the 2nd value, it is updated in place
+     */
+    static Source read(final DataInputStream input) throws IOException {
+      long size = input.readLong();
+      long lastModified = input.readLong();
+      long fingerprint = input.readLong();
+      long sampleHash = input.readLong();
+      long contentHash = input.readLong();
+      Source result = new Source(
+        Paths.get(input.readUTF()), size, lastModified, fingerprint);
+      result.sampleHash = sampleHash;
+      result.contentHash = contentHash;
+      return result;
+    }
+
+    void write(final DataOutputStream output) throws IOException {
+      output.writeLong(size);
+      output.writeLong(lastModified);
+      output.writeLong(fingerprint);
+      output.writeLong(sampleHash);
+      output.writeLong(contentHash);
+      output.writeUTF(file.toString());
+    }
+
+    Source hashed() throws IOException {
+      sampleHash = sampleHash(file, size);
+      contentHash = contentHash(file, size);
+      return this;
+    }
+
+    /**
+     * The size is compared first, then a hash of sampled blocks,
+     *  if the modification time is the same, otherwise a hash of the whole file
+     */
+    boolean isCompiledAs(final Source cached) throws IOException {
+      if (size != cached.size
+        || fingerprint != cached.fingerprint
+        || !file.equals(cached.file)) {
+        return false;
+      }
+      return lastModified == cached.lastModified
+        ? sampleHash(file, size) == cached.sampleHash
+        : contentHash(file, size) == cached.contentHash;
+    }
+
+    //FNV-1a of the first and the last block and of blocks between them
+    private static long sampleHash(final Path file, final long size) throws IOException {
+      long result = 0xcbf29ce484222325L;
+      ByteBuffer sample = ByteBuffer.allocate(SAMPLE_SIZE);
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        for (int i = 0; i < SAMPLES; i++) {
+          long from = Math.max(0, size - SAMPLE_SIZE) * i / (SAMPLES - 1);
+          sample.clear();
+          int read = 0;
+          while (sample.hasRemaining() && read >= 0) {
+            read = channel.read(sample, from + sample.position());
+          }
+          sample.flip();
+          result = hash(result, sample);
+        }
+      }
+      return result;
+    }
+
+    private static long contentHash(final Path file, final long size) throws IOException {
+      long result = 0xcbf29ce484222325L;
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        for (long from = 0; from < size; from += HASH_WINDOW_SIZE) {
+          result = hash(result, channel.map(FileChannel.MapMode.READ_ONLY,
+            from, Math.min(HASH_WINDOW_SIZE, size - from)));
+        }
+      }
+      return result;
+    }
+
+    //FNV-1a of 8 byte words, then of the last bytes
+    private static long hash(long result, final ByteBuffer bytes) {
+      while (bytes.remaining() >= 8) {
+        result = (result ^ bytes.getLong()) * 0x100000001b3L;
+      }
+      while (bytes.hasRemaining()) {
+        result = (result ^ (bytes.get() & 0xFF)) * 0x100000001b3L;
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package com.savdev.commons.file;
+
+import java.util.Arrays;
+
+/**
+ * Canonical values of a low cardinality column, see
+ *  CsvReaderBuilder.dictionaryColumn(). A value is found by a hash lookup
+ *  over its chars, a String is created only for a new value.
+ *  Every value gets an int code, codes start with 0 in the order of appearance.
+ *  Not thread safe, every reader (or split of a parallel stream) has its own.
+ */
+public class CsvDictionary {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private String[] values = new String[INITIAL_CAPACITY]; //by codes
+  private int[] hashes = new int[INITIAL_CAPACITY]; //by codes
+  //open addressing table of codes + 1, 0 - empty slot:
+  private int[] table = new int[INITIAL_CAPACITY << 1];
+  private int size = 0;
+
+  public int size() {
+    return size;
+  }
+
+  public String value(final int code) {
+    if (code < 0 || code >= size) {
+      throw new IllegalArgumentException(
+        String.format("Code = '%d' is not in the dictionary, size = '%d'",
+          code, size));
+    }
+    return values[code];
+  }
+
+  /**
+   * @return the code of the value, a new value is added
+   */
+  public int code(final CharSequence value) {
+    int hash = hash(value);
+    int mask = table.length - 1;
+    int slot = mix(hash) & mask;
+    while (table[slot] != 0) {
+      int code = table[slot] - 1;
+      if (hashes[code] == hash && values[code].contentEquals(value)) {
+        return code;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return add(value.toString(), hash, slot);
+  }
+
+  /**
+   * @return the canonical instance of the value
+   */
+  public String canonical(final CharSequence value) {
+    return values[code(value)];
+  }
+
+  private int add(final String value, final int hash, final int slot) {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, size << 1);
+      hashes = Arrays.copyOf(hashes, size << 1);
+    }
+    values[size] = value;
+    hashes[size] = hash;
+    table[slot] = size + 1;
+    size++;
+    //load factor is kept under 1/2
+    if (size << 1 > table.length) {
+      rehash();
+    }
+    return size - 1;
+  }
+
+  private void rehash() {
+    table = new int[table.length << 1];
+    int mask = table.length - 1;
+    for (int code = 0; code < size; code++) {
+      int slot = mix(hashes[code]) & mask;
+      while (table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = code + 1;
+    }
+  }
+
+  //same as String.hashCode()
+  private static int hash(final CharSequence value) {
+    if (value instanceof String || value instanceof FieldSlice) {
+      return value.hashCode();
+    }
+    int result = 0;
+    for (int i = 0; i < value.length(); i++) {
+      result = 31 * result + value.charAt(i);
+    }
+    return result;
+  }
+
+  //String hashes of similar values differ mostly in low bits
+  private static int mix(final int hash) {
+    return hash ^ hash >>> 16;
+  }
+}
@@ -0,0 +1,31 @@
+package com.savdev.commons.file;
+
+/**
+ * Receives csv records, pushed by CsvReader.parse(),
+ *  an alternative to csvLines() without iterators and streams.
+ *  Columns are indexes of selected columns, see CsvReaderBuilder.columns().
+ */
+public interface CsvHandler {
+
+  /**
+   * Is called once before the 1st record
+   */
+  default void header(final String[] columnNames) {
+  }
+
+  default void startRecord() {
+  }
+
+  /**
+   * @param value is valid only during the call, toString() returns a copy,
+   *  the canonical instance is passed for a dictionary column
+   */
+  void field(int column, CharSequence value);
+
+  /**
+   * @return false to stop parsing
+   */
+  default boolean endRecord() {
+    return true;
+  }
+}
@@ -0,0 +1,45 @@
+package com.savdev.commons.file;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * Column names of a csv file, given to readers of its ranges,
+ *  see CsvReaderBuilder.range(). Is taken from a reader by CsvReader.header(),
+ *  or is created for a file without a header line.
+ */
+public class CsvHeader {
+
+  final List<String> columnNames;
+  //byte offset of the 1st record, -1 if it is not known
+  final long dataOffset;
+
+  /**
+   * A header of a file without a header line, records start at 0
+   */
+  public CsvHeader(final List<String> columnNames) {
+    this(columnNames, 0);
+  }
+
+  CsvHeader(final List<String> columnNames, final long dataOffset) {
+    if (columnNames == null || columnNames.isEmpty()) {
+      throw new IllegalArgumentException(
+        "Header column names cannot be empty");
+    }
+    this.columnNames = ImmutableList.copyOf(columnNames);
+    this.dataOffset = dataOffset;
+  }
+
+  public List<String> columnNames() {
+    return columnNames;
+  }
+
+  /**
+   * @return byte offset of the 1st record after the header line,
+   *  -1 if it is not known, when the header is read by a decoding reader
+   */
+  public long dataOffset() {
+    return dataOffset;
+  }
+}
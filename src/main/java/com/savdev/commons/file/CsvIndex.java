@@ -0,0 +1,192 @@
+package com.savdev.commons.file;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Byte offsets of every step-th record of a csv file, used by CsvReader.seek()
+ *  to jump to a record by one mapping and at most step - 1 skipped records.
+ *  Records are numbered from 0, the header is not a record.
+ *  Is built by reading the file once, see build() or CsvReaderBuilder.indexEvery().
+ *  The sidecar file keeps offsets as varint deltas, with the size and
+ *  the modification time of the csv file, an index of a changed file is stale.
+ */
+public class CsvIndex {
+
+  private static final int MAGIC = 0x43535649; //CSVI
+  private static final int VERSION = 1;
+
+  final int step;
+  final long records;
+  final long[] offsets; //offsets[i] - offset of the record i * step
+  final long fileSize;
+  final long lastModified;
+
+  CsvIndex(
+    final int step,
+    final long records,
+    final long[] offsets,
+    final long fileSize,
+    final long lastModified) {
+    this.step = step;
+    this.records = records;
+    this.offsets = offsets;
+    this.fileSize = fileSize;
+    this.lastModified = lastModified;
+  }
+
+  /**
+   * Reads all records of a mapped file reader, which is not read yet
+   */
+  public static CsvIndex build(final CsvReader reader, final int step) {
+    reader.indexEvery(step);
+    if (!reader.headerCalculated) {
+      reader.calculateHeaders();
+    }
+    while (reader.nextLazyRecord()) {
+      //only offsets are collected, fields are not tokenized
+    }
+    return reader.index();
+  }
+
+  /**
+   * @return the index of the sidecar, if it is built for the current
+   *  version of the csv file, otherwise the index is stale
+   */
+  public static Optional<CsvIndex> load(final Path sidecar, final Path file) {
+    if (!Files.exists(sidecar)) {
+      return Optional.empty();
+    }
+    try (DataInputStream input = new DataInputStream(
+      new BufferedInputStream(Files.newInputStream(sidecar)))) {
+      if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+        return Optional.empty();
+      }
+      long fileSize = input.readLong();
+      long lastModified = input.readLong();
+      int step = input.readInt();
+      long records = input.readLong();
+      long[] offsets = new long[input.readInt()];
+      long offset = 0;
+      for (int i = 0; i < offsets.length; i++) {
+        offset += readVarLong(input);
+        offsets[i] = offset;
+      }
+      CsvIndex index = new CsvIndex(step, records, offsets, fileSize, lastModified);
+      return index.valid(file) ? Optional.of(index) : Optional.empty();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Loads the sidecar, or builds the index by the reader
+   *  and writes the sidecar, if it is missing or stale
+   */
+  public static CsvIndex loadOrBuild(
+    final Path sidecar,
+    final CsvReader reader,
+    final int step) {
+    Optional<CsvIndex> loaded = load(sidecar, reader.path);
+    if (loaded.isPresent() && loaded.get().step == step) {
+      return loaded.get();
+    }
+    CsvIndex index = build(reader, step);
+    index.write(sidecar);
+    return index;
+  }
+
+  public void write(final Path sidecar) {
+    try (DataOutputStream output = new DataOutputStream(
+      new BufferedOutputStream(Files.newOutputStream(sidecar)))) {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeLong(fileSize);
+      output.writeLong(lastModified);
+      output.writeInt(step);
+      output.writeLong(records);
+      output.writeInt(offsets.length);
+      long previous = 0;
+      for (long offset : offsets) {
+        writeVarLong(output, offset - previous);
+        previous = offset;
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return false if the file is changed after the index was built
+   */
+  public boolean valid(final Path file) {
+    try {
+      return Files.size(file) == fileSize
+        && Files.getLastModifiedTime(file).toMillis() == lastModified;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  public int step() {
+    return step;
+  }
+
+  /**
+   * @return number of records in the file
+   */
+  public long records() {
+    return records;
+  }
+
+  /**
+   * @return offset of the nearest indexed record, not after the record
+   */
+  long offset(final long record) {
+    if (record < 0 || record >= records) {
+      throw new IllegalArgumentException(
+        String.format("Record = '%d' is out of the file, records = '%d'",
+          record, records));
+    }
+    return offsets[(int) (record / step)];
+  }
+
+  static long lastModified(final Path file) {
+    try {
+      return Files.getLastModifiedTime(file).toMillis();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static long[] trim(final long[] offsets, final int size) {
+    return size == offsets.length ? offsets : Arrays.copyOf(offsets, size);
+  }
+
+  private static void writeVarLong(final DataOutputStream output, long value)
+    throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      output.writeByte((int) (value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    output.writeByte((int) value);
+  }
+
+  private static long readVarLong(final DataInputStream input) throws IOException {
+    long result = 0;
+    for (int shift = 0; ; shift += 7) {
+      int b = input.readUnsignedByte();
+      result |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return result;
+      }
+    }
+  }
+}
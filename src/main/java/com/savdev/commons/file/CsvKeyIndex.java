@@ -0,0 +1,399 @@
+package com.savdev.commons.file;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Values of a key column of a memory mapped csv file for point lookups.
+ *  The sidecar file keeps 64 bit hashes of values with offsets of their
+ *  records, sorted by hashes, it is memory mapped back, a key is found
+ *  by a binary search and only records with the same hash are parsed.
+ *  If records are appended to the file and the indexed part is not changed
+ *  (its last bytes are compared), only appended records are indexed,
+ *  otherwise the index is rebuilt.
+ *  Not thread safe, lookups are parsed by the same reader,
+ *  a file of up to 2GB is mapped once for all lookups.
+ */
+public class CsvKeyIndex implements Closeable {
+
+  private static final int MAGIC = 0x4353564B; //CSVK
+  private static final int VERSION = 1;
+  //magic, version, file size, last modified, tail hash, key field, entries:
+  private static final int HEADER_SIZE = 48;
+  //last bytes of the indexed part, used to check an appended file:
+  private static final int TAIL_SIZE = 4096;
+
+  final CsvReader reader;
+  final int keyField;
+  final Path sidecar;
+  private final FieldSlice slice = new FieldSlice();
+  //pairs of a hash and an offset:
+  LongBuffer entries;
+  long size;
+  //the csv file, mapped by the 1st lookup, null if it is bigger than 2GB
+  ByteBuffer file;
+
+  private CsvKeyIndex(final CsvReader reader, final String keyColumn, final Path sidecar) {
+    if (reader.path == null) {
+      throw new IllegalArgumentException(
+        "Only a memory mapped file can have a key index");
+    }
+    if (!reader.headerCalculated) {
+      reader.calculateHeaders();
+    }
+    this.reader = reader;
+    this.keyField = reader.csvHeader.values().stream()
+      .filter(c -> c.columnName.equals(keyColumn))
+      .mapToInt(c -> c.columnPosition)
+      .findFirst()
+      .orElseThrow(() -> new IllegalArgumentException(
+        String.format("Key column = '%s' is not found in the header", keyColumn)));
+    this.sidecar = sidecar;
+  }
+
+  /**
+   * Maps the sidecar, it is updated if the file is appended,
+   *  or is built if it is missing or stale
+   * @param reader of the file, is used for lookups and is closed by close()
+   */
+  public static CsvKeyIndex open(
+    final CsvReader reader,
+    final String keyColumn,
+    final Path sidecar) {
+    CsvKeyIndex index = new CsvKeyIndex(reader, keyColumn, sidecar);
+    index.load();
+    return index;
+  }
+
+  /**
+   * Indexes all records of the file and writes the sidecar
+   */
+  public static CsvKeyIndex build(
+    final CsvReader reader,
+    final String keyColumn,
+    final Path sidecar) {
+    CsvKeyIndex index = new CsvKeyIndex(reader, keyColumn, sidecar);
+    index.rebuild();
+    return index;
+  }
+
+  /**
+   * @return the 1st record in the file with the key value
+   */
+  public Optional<Map<String, String>> lookup(final String key) {
+    long hash = hash(key);
+    long low = 0;
+    long high = size;
+    while (low < high) {
+      long middle = (low + high) >>> 1;
+      if (hashAt(middle) < hash) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    for (long i = low; i < size && hashAt(i) == hash; i++) {
+      moveTo(entries.get((int) (i << 1) + 1));
+      //the indexed record itself, filters of the reader are not applied
+      if (!reader.startUnfilteredRecord()) {
+        continue;
+      }
+      reader.tokenize(keyField);
+      if (key.contentEquals(reader.tokenizer.slice(keyField, slice))) {
+        reader.tokenize(reader.csvHeader.size() - 1);
+        return Optional.of(reader.record());
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * @return number of indexed records
+   */
+  public long size() {
+    return size;
+  }
+
+  @Override
+  public void close() {
+    entries = null;
+    file = null;
+    reader.close();
+  }
+
+  private void moveTo(final long offset) {
+    if (file == null && fileSize() <= Integer.MAX_VALUE) {
+      try (FileChannel channel = FileChannel.open(reader.path, StandardOpenOption.READ)) {
+        file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    if (file != null) {
+      reader.moveTo(file, offset);
+    } else {
+      reader.moveTo(offset);
+    }
+  }
+
+  private long hashAt(final long entry) {
+    return entries.get((int) (entry << 1));
+  }
+
+  private void load() {
+    long[] header = readHeader();
+    long fileSize = fileSize();
+    if (header == null) {
+      rebuild();
+    } else if (header[0] == fileSize && header[1] == CsvIndex.lastModified(reader.path)) {
+      map();
+    } else if (header[0] < fileSize && header[2] != 0 && header[2] == tailHash(header[0])) {
+      append(header[0]);
+    } else {
+      rebuild();
+    }
+  }
+
+  private void rebuild() {
+    Entries added = index(Math.max(reader.dataOffset, 0));
+    added.sort();
+    write(null, added);
+    map();
+  }
+
+  /**
+   * Indexes records, starting at the previous file size, merges them with
+   *  already indexed ones
+   */
+  private void append(final long indexedSize) {
+    map();
+    Entries added = index(indexedSize);
+    added.sort();
+    write(entries, added);
+    map();
+  }
+
+  /**
+   * @return hashes of key values of records, starting at the offset
+   */
+  private Entries index(final long offset) {
+    Entries result = new Entries();
+    reader.moveTo(offset);
+    while (reader.nextLazyRecord()) {
+      long start = reader.tokenizer.recordStart;
+      reader.tokenize(keyField);
+      result.add(hash(reader.tokenizer.slice(keyField, slice)), start);
+    }
+    return result;
+  }
+
+  /**
+   * Writes sorted old and new entries by a merge, into a new sidecar
+   */
+  private void write(final LongBuffer old, final Entries added) {
+    long oldSize = old != null ? size : 0;
+    long fileSize = fileSize();
+    Path temp = sidecar.resolveSibling(sidecar.getFileName() + ".tmp");
+    try (DataOutputStream output = new DataOutputStream(
+      new BufferedOutputStream(Files.newOutputStream(temp)))) {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeLong(fileSize);
+      output.writeLong(CsvIndex.lastModified(reader.path));
+      output.writeLong(tailHash(fileSize));
+      output.writeInt(keyField);
+      output.writeInt(0);
+      output.writeLong(oldSize + added.size);
+      long i = 0;
+      int j = 0;
+      while (i < oldSize || j < added.size) {
+        //new records are after old ones, so an old entry goes 1st by equal hashes
+        if (j == added.size || i < oldSize && old.get((int) (i << 1)) <= added.hashes[j]) {
+          output.writeLong(old.get((int) (i << 1)));
+          output.writeLong(old.get((int) (i << 1) + 1));
+          i++;
+        } else {
+          output.writeLong(added.hashes[j]);
+          output.writeLong(added.offsets[j]);
+          j++;
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    try {
+      Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void map() {
+    try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+      long bytes = channel.size() - HEADER_SIZE;
+      if (bytes > Integer.MAX_VALUE) {
+        throw new IllegalStateException(
+          String.format("Key index = '%s' cannot be mapped, size = '%d'", sidecar, bytes));
+      }
+      entries = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, bytes).asLongBuffer();
+      size = bytes / 16;
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return file size, last modified and tail hash of the indexed file,
+   *  null if the sidecar is missing or is built for another key column
+   */
+  private long[] readHeader() {
+    if (!Files.exists(sidecar)) {
+      return null;
+    }
+    try (DataInputStream input = new DataInputStream(Files.newInputStream(sidecar))) {
+      if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+        return null;
+      }
+      long[] result = {input.readLong(), input.readLong(), input.readLong()};
+      return input.readInt() == keyField ? result : null;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private long fileSize() {
+    try {
+      return Files.size(reader.path);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return hash of the last bytes before the offset, 0 if they do not end
+   *  with the line separator, an appended record would continue the last one
+   */
+  private long tailHash(final long offset) {
+    int length = (int) Math.min(TAIL_SIZE, offset);
+    ByteBuffer tail = ByteBuffer.allocate(length);
+    try (FileChannel channel = FileChannel.open(reader.path, StandardOpenOption.READ)) {
+      while (tail.hasRemaining()
+        && channel.read(tail, offset - length + tail.position()) != -1) {
+        //reads the whole tail
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    byte[] separator = reader.csvLineSeparator.getBytes(reader.encoding);
+    byte[] bytes = tail.array();
+    if (length < separator.length
+      || !Arrays.equals(separator,
+      Arrays.copyOfRange(bytes, length - separator.length, length))) {
+      return 0;
+    }
+    long result = 0xcbf29ce484222325L;
+    for (byte b : bytes) {
+      result = (result ^ (b & 0xFF)) * 0x100000001b3L;
+    }
+    return result;
+  }
+
+  //FNV-1a over chars
+  static long hash(final CharSequence value) {
+    long result = 0xcbf29ce484222325L;
+    for (int i = 0; i < value.length(); i++) {
+      result = (result ^ value.charAt(i)) * 0x100000001b3L;
+    }
+    return result;
+  }
+
+  /**
+   * Hashes with offsets of their records, in the file order until sorted
+   */
+  static class Entries {
+    long[] hashes = new long[1024];
+    long[] offsets = new long[1024];
+    int size = 0;
+
+    void add(final long hash, final long offset) {
+      if (size == hashes.length) {
+        hashes = Arrays.copyOf(hashes, size << 1);
+        offsets = Arrays.copyOf(offsets, size << 1);
+      }
+      hashes[size] = hash;
+      offsets[size] = offset;
+      size++;
+    }
+
+    /**
+     * By hashes, then by offsets
+     */
+    void sort() {
+      sort(0, size - 1);
+    }
+
+    private void sort(int from, int to) {
+      while (to - from > 16) {
+        int middle = (from + to) >>> 1;
+        long pivotHash = hashes[middle];
+        long pivotOffset = offsets[middle];
+        int i = from;
+        int j = to;
+        while (i <= j) {
+          while (less(i, pivotHash, pivotOffset)) {
+            i++;
+          }
+          while (greater(j, pivotHash, pivotOffset)) {
+            j--;
+          }
+          if (i <= j) {
+            swap(i++, j--);
+          }
+        }
+        //the smaller part by recursion, the bigger one by the loop
+        if (j - from < to - i) {
+          sort(from, j);
+          from = i;
+        } else {
+          sort(i, to);
+          to = j;
+        }
+      }
+      for (int i = from + 1; i <= to; i++) {
+        for (int j = i; j > from && greater(j - 1, hashes[j], offsets[j]); j--) {
+          swap(j - 1, j);
+        }
+      }
+    }
+
+    private boolean less(final int i, final long hash, final long offset) {
+      return hashes[i] < hash || hashes[i] == hash && offsets[i] < offset;
+    }
+
+    private boolean greater(final int i, final long hash, final long offset) {
+      return hashes[i] > hash || hashes[i] == hash && offsets[i] > offset;
+    }
+
+    private void swap(final int i, final int j) {
+      long hash = hashes[i];
+      hashes[i] = hashes[j];
+      hashes[j] = hash;
+      long offset = offsets[i];
+      offsets[i] = offsets[j];
+      offsets[j] = offset;
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package com.savdev.commons.file;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+/**
+ * A byte range of a csv file, read by CsvReaderBuilder.range(),
+ *  the reader of the range reads records, starting inside it.
+ *  The start and the end are arbitrary offsets, the reader moves them
+ *  to record starts, see RecordStarts.resync().
+ */
+public class CsvRange {
+
+  final long start;
+  final long end;
+
+  public CsvRange(final long start, final long end) {
+    if (start < 0 || end < start) {
+      throw new IllegalArgumentException(
+        String.format("Range = [%d, %d) is not valid", start, end));
+    }
+    this.start = start;
+    this.end = end;
+  }
+
+  public long start() {
+    return start;
+  }
+
+  public long end() {
+    return end;
+  }
+
+  /**
+   * Splits data of the file into consecutive ranges of equal byte sizes,
+   *  the file is not read. Readers of the ranges align their common
+   *  boundaries to the same record starts, so they read every record once
+   * @param reader a memory mapped file reader, its header is calculated
+   * @param count number of ranges, a small file may give empty ranges
+   */
+  public static List<CsvRange> plan(final CsvReader reader, final int count) {
+    if (count <= 0) {
+      throw new IllegalArgumentException(
+        String.format("Number of ranges = '%d' must be positive", count));
+    }
+    if (reader.path == null) {
+      throw new IllegalArgumentException(
+        "Only a memory mapped file can be split into ranges");
+    }
+    CsvHeader header = reader.header();
+    long size = RecordStarts.size(reader.path);
+    long from = Math.min(Math.max(header.dataOffset, 0), size);
+    long length = size - from;
+    List<CsvRange> result = Lists.newArrayListWithCapacity(count);
+    for (int i = 0; i < count; i++) {
+      result.add(new CsvRange(
+        from + length * i / count,
+        from + length * (i + 1) / count));
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("[%d, %d)", start, end);
+  }
+}
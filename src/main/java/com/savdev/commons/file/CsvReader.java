@@ -1,46 +1,95 @@
 package com.savdev.commons.file;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.savdev.commons.function.Executor;
-import org.apache.commons.io.IOUtils;
+import com.google.common.collect.Sets;
 import org.apache.commons.lang3.StringUtils;
 
 import javax.validation.constraints.NotNull;
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
-public class CsvReader {
+public class CsvReader implements Closeable {
 
   private static int BUFFER_SIZE = 32768;
+  private static int MAPPED_WINDOW_SIZE = 64 * 1024 * 1024;
 
   final Storage storage;
+  final CsvTokenizer tokenizer;
   final String csvLineSeparator;
   final String csvColumnSeparator;
   final Charset encoding;
+  final Path path; //not null for a mapped file, that can be split
+  int prefetchDepth = 0;
+  //buffer size of an input stream, given to reset()
+  int streamBufferSize = BUFFER_SIZE;
+  //records, starting at or after this offset, are not read
+  long endOffset = Long.MAX_VALUE;
+  //false - the end offset is moved to a record start by RecordStarts.resync()
+  boolean endAligned = true;
+  //byte offset of the 1st record after the header, -1 if it is not known
+  long dataOffset = -1;
+
+  //declared column types by column names
+  final Map<String, CsvColumnMetadata> columnTypes = Maps.newHashMap();
+  //low cardinality columns, see CsvReaderBuilder.dictionaryColumn()
+  final Set<String> dictionaryColumns = Sets.newHashSet();
+  //filters by column names, see CsvReaderBuilder.where()
+  final Map<String, Predicate<CharSequence>> filters = Maps.newLinkedHashMap();
+  //requested columns, either names or header indexes, null - all columns
+  String[] selectedNames;
+  int[] selectedIndexes;
 
   //calculated state:
+  boolean headerCalculated = false;
+  CsvColumnMetadata[] columns; //header by positions, not looked up per record
   final Map<Integer, CsvColumnMetadata> csvHeader = Maps.newLinkedHashMap();
   boolean noMoreData = false;
+  boolean separatorsLearned = false;
+  int[] projection; //header indexes of extracted columns
+  //filters, ordered by header indexes of columns:
+  int[] filterColumns = new int[0];
+  List<Predicate<CharSequence>> filterPredicates = Lists.newArrayList();
+  final FieldSlice filterSlice = new FieldSlice();
   Map<String, String> csvRecord = Maps.newHashMap();
+  long recordNumber = 0; //number of started records, the header is not counted
+  //offsets of every indexStep-th record, see indexEvery():
+  int indexStep = 0;
+  long[] indexOffsets;
+  int indexSize = 0;
 
-  private CsvReader(
-    final InputStream input,
+  CsvReader(
+    final Storage storage,
+    final Path path,
     final Charset encoding,
     final String csvLineSeparator,
-    final String csvColumnSeparator,
-    final int bufferSize
+    final String csvColumnSeparator
   ) {
     this.csvLineSeparator = csvLineSeparator;
     this.csvColumnSeparator = csvColumnSeparator;
     this.encoding = encoding;
-    this.storage = new Storage(bufferSize, input, encoding);
+    this.storage = storage;
+    this.path = path;
+    this.tokenizer = new CsvTokenizer(
+      storage, csvColumnSeparator, csvLineSeparator);
   }
 
   public static CsvReaderBuilder builder(){
@@ -49,10 +98,28 @@ public class CsvReader {
 
   public static class CsvReaderBuilder {
     private InputStream input;
+    private Path path;
+    private char[] chars;
+    private int charsOffset;
+    private int charsLength;
+    private ByteBuffer bytes;
+    private CsvHeader rangeHeader; //not null - the path is read by a range
+    private long rangeStart;
+    private long rangeEnd;
+    private int indexStep = 0;
     private Charset encoding = StandardCharsets.UTF_8;
     private String csvLineSeparator = System.lineSeparator();
     private String csvColumnSeparator = ",";
-    private int bufferSize = BUFFER_SIZE;
+    private Integer bufferSize; //depends on input if not defined
+    private boolean byteScanning = false;
+    private int prefetchDepth = 0;
+    private ChunkBufferPool bufferPool;
+    private final Map<String, CsvColumnMetadata> columnTypes = Maps.newHashMap();
+    private String[] selectedNames;
+    private int[] selectedIndexes;
+    private final Map<String, Predicate<CharSequence>> filters =
+      Maps.newLinkedHashMap();
+    private final Set<String> dictionaryColumns = Sets.newHashSet();
 
     public CsvReaderBuilder input(
       @NotNull final InputStream input) {
@@ -61,6 +128,144 @@ public class CsvReader {
           "Cannot create reader, input cannot be null");
       }
       this.input = input;
+      this.path = null;
+      this.chars = null;
+      this.bytes = null;
+      this.rangeHeader = null;
+      return this;
+    }
+
+    /**
+     * The file is memory mapped by windows of buffer size (64MB by default)
+     *  and scanned without decoding, see byteScanning.
+     *  If the encoding does not allow byte scanning, the file is read as a stream.
+     */
+    public CsvReaderBuilder input(
+      @NotNull final Path path) {
+      if (path == null){
+        throw new IllegalArgumentException(
+          "Cannot create reader, path cannot be null");
+      }
+      this.path = path;
+      this.input = null;
+      this.chars = null;
+      this.bytes = null;
+      this.rangeHeader = null;
+      return this;
+    }
+
+    /**
+     * Reads only records, starting in the byte range of the file.
+     *  The start and the end are arbitrary offsets, both are moved
+     *  to the 1st record start not before them by RecordStarts.resync(),
+     *  which skips line separators inside quoted values. So ranges with
+     *  common boundaries read every record once: the range, that owns
+     *  the record start, reads the record through its end.
+     *  The reader fails, if its last record crosses the resynchronized end.
+     *  The header is not read from the file,
+     *  the given one with a known data offset is used.
+     *  The file is memory mapped, so the encoding must allow byte scanning.
+     */
+    public CsvReaderBuilder range(
+      @NotNull final Path path,
+      final long start,
+      final long end,
+      @NotNull final CsvHeader header) {
+      if (path == null || header == null){
+        throw new IllegalArgumentException(
+          "Cannot create reader, path and header cannot be null");
+      }
+      if (start < 0 || end < start){
+        throw new IllegalArgumentException(
+          String.format("Cannot create reader, range = [%d, %d) is not valid",
+            start, end));
+      }
+      if (header.dataOffset < 0){
+        throw new IllegalArgumentException(
+          "Cannot create reader, data offset of the header is not known");
+      }
+      input(path);
+      this.rangeHeader = header;
+      this.rangeStart = start;
+      this.rangeEnd = end;
+      return this;
+    }
+
+    /**
+     * Chars of the value are tokenized as a single chunk,
+     *  buffer size, byte scanning, prefetch and buffer pool are not used.
+     *  A String is copied once, instead of encoding and decoding it by a stream.
+     */
+    public CsvReaderBuilder input(
+      @NotNull final CharSequence value) {
+      if (value == null){
+        throw new IllegalArgumentException(
+          "Cannot create reader, input cannot be null");
+      }
+      char[] result;
+      if (value instanceof String){
+        result = ((String) value).toCharArray();
+      } else {
+        result = new char[value.length()];
+        for (int i = 0; i < result.length; i++){
+          result[i] = value.charAt(i);
+        }
+      }
+      return chars(result, 0, result.length);
+    }
+
+    /**
+     * The array is tokenized as a single chunk without copying,
+     *  offsets of records are indexes in the array.
+     *  The array must not be changed, while it is read.
+     *  Buffer size, byte scanning, prefetch and buffer pool are not used.
+     */
+    public CsvReaderBuilder input(
+      @NotNull final char[] chars,
+      final int offset,
+      final int length) {
+      if (chars == null){
+        throw new IllegalArgumentException(
+          "Cannot create reader, input cannot be null");
+      }
+      if (offset < 0 || length < 0 || offset > chars.length - length){
+        throw new IllegalArgumentException(
+          String.format("Cannot create reader, offset = '%d' and length = '%d' " +
+            "are out of the array, array length = '%d'", offset, length, chars.length));
+      }
+      return chars(chars, offset, length);
+    }
+
+    /**
+     * Bytes from the buffer position till its limit are scanned
+     *  without copying by windows of buffer size (the whole input by default),
+     *  the same way as a mapped file. The buffer must not be changed,
+     *  while it is read. If the encoding does not allow byte scanning,
+     *  bytes are decoded once and are tokenized as chars.
+     *  Prefetch and buffer pool are not used.
+     */
+    public CsvReaderBuilder input(
+      @NotNull final ByteBuffer bytes) {
+      if (bytes == null){
+        throw new IllegalArgumentException(
+          "Cannot create reader, input cannot be null");
+      }
+      this.bytes = bytes;
+      this.chars = null;
+      this.input = null;
+      this.path = null;
+      this.rangeHeader = null;
+      return this;
+    }
+
+    private CsvReaderBuilder chars(final char[] chars, final int offset, final int length){
+      this.chars = chars;
+      this.charsOffset = offset;
+      this.charsLength = length;
+      this.bytes = null;
+      this.input = null;
+      this.path = null;
+      this.rangeHeader = null;
       return this;
     }
 
@@ -96,7 +301,7 @@ public class CsvReader {
 
     public CsvReaderBuilder bufferSize(
       final int bufferSize) {
-      if (bufferSize == 0){
+      if (bufferSize <= 0){
         throw new IllegalArgumentException(
           "Cannot create reader, buffer size cannot be 0");
       }
@@ -104,25 +309,319 @@ public class CsvReader {
       return this;
     }
 
+    /**
+     * Separators are searched in not decoded input,
+     *  only extracted values are decoded.
+     *  Supported for UTF-8 and single byte encodings,
+     *  in both of them a separator cannot match a part of another char.
+     */
+    public CsvReaderBuilder byteScanning(
+      final boolean byteScanning) {
+      this.byteScanning = byteScanning;
+      return this;
+    }
+
+    /**
+     * Only these columns are extracted, in this order,
+     *  other fields are tokenized, but their values are never created
+     */
+    public CsvReaderBuilder columns(
+      @NotNull final String... columnNames) {
+      if (columnNames == null || columnNames.length == 0){
+        throw new IllegalArgumentException(
+          "Cannot create reader, selected columns cannot be empty");
+      }
+      this.selectedNames = columnNames.clone();
+      this.selectedIndexes = null;
+      return this;
+    }
+
+    /**
+     * @param columnIndexes positions of columns in the header, starting with 0
+     */
+    public CsvReaderBuilder columns(
+      @NotNull final int... columnIndexes) {
+      if (columnIndexes == null || columnIndexes.length == 0){
+        throw new IllegalArgumentException(
+          "Cannot create reader, selected columns cannot be empty");
+      }
+      this.selectedIndexes = columnIndexes.clone();
+      this.selectedNames = null;
+      return this;
+    }
+
+    /**
+     * Only records with a matching value of the column are read.
+     *  The record is tokenized till filtered columns,
+     *  the rest of a not matching record is skipped without extracting values.
+     *  Several filters must all match.
+     * @param predicate gets the value as a slice, valid only during the call,
+     *                  must be thread safe for a parallel stream
+     */
+    public CsvReaderBuilder where(
+      @NotNull final String columnName,
+      @NotNull final Predicate<CharSequence> predicate) {
+      if (StringUtils.isEmpty(columnName) || predicate == null){
+        throw new IllegalArgumentException(
+          "Cannot create reader, filter column and predicate cannot be empty");
+      }
+      filters.merge(columnName, predicate, Predicate::and);
+      return this;
+    }
+
+    /**
+     * Values of a low cardinality column are canonical instances
+     *  from the column dictionary, a String is created only for a new value.
+     *  CsvRow and CsvBatch also give int codes of values.
+     */
+    public CsvReaderBuilder dictionaryColumn(
+      @NotNull final String columnName) {
+      if (StringUtils.isEmpty(columnName)){
+        throw new IllegalArgumentException(
+          "Cannot create reader, dictionary column cannot be empty");
+      }
+      dictionaryColumns.add(columnName);
+      return this;
+    }
+
+    /**
+     * Declares a type of a column, that is used by typed accessors of CsvRow,
+     *  see also decimalColumn() and dateColumn()
+     */
+    public CsvReaderBuilder columnType(
+      @NotNull final String columnName,
+      @NotNull final CsvColumnType type) {
+      if (type == CsvColumnType.DECIMAL || type == CsvColumnType.DATE){
+        throw new IllegalArgumentException(
+          String.format("Cannot declare column = '%s', type = '%s' " +
+            "requires a scale or a pattern", columnName, type));
+      }
+      return declare(CsvColumnMetadata.builder()
+        .name(columnName)
+        .type(type));
+    }
+
+    /**
+     * @param scale number of fraction digits of the unscaled long value
+     */
+    public CsvReaderBuilder decimalColumn(
+      @NotNull final String columnName,
+      final int scale) {
+      if (scale < 0 || scale > 18){
+        throw new IllegalArgumentException(
+          String.format("Cannot declare column = '%s', scale = '%d' " +
+            "must be between 0 and 18", columnName, scale));
+      }
+      return declare(CsvColumnMetadata.builder()
+        .name(columnName)
+        .type(CsvColumnType.DECIMAL)
+        .scale(scale));
+    }
+
+    /**
+     * @param pattern every 'y', 'M', 'd' is a single digit, for instance "yyyy-MM-dd"
+     */
+    public CsvReaderBuilder dateColumn(
+      @NotNull final String columnName,
+      @NotNull final String pattern) {
+      if (StringUtils.isEmpty(pattern)){
+        throw new IllegalArgumentException(
+          String.format("Cannot declare column = '%s', date pattern cannot be empty",
+            columnName));
+      }
+      return declare(CsvColumnMetadata.builder()
+        .name(columnName)
+        .type(CsvColumnType.DATE)
+        .pattern(pattern));
+    }
+
+    private CsvReaderBuilder declare(
+      final CsvColumnMetadata.CsvColumnMetadataBuilder column) {
+      CsvColumnMetadata declared = column.build();
+      if (StringUtils.isEmpty(declared.columnName)
+        || declared.type == null){
+        throw new IllegalArgumentException(
+          "Cannot declare a column without a name or a type");
+      }
+      columnTypes.put(declared.columnName, declared);
+      return this;
+    }
+
+    /**
+     * Stream input is read by a background thread,
+     *  at most depth chunks ahead of the parser.
+     *  The thread is stopped, when the reader is closed.
+     *  Not used for a memory mapped file.
+     * @param depth 0 - no read ahead
+     */
+    public CsvReaderBuilder prefetch(
+      final int depth) {
+      if (depth < 0){
+        throw new IllegalArgumentException(
+          "Cannot create reader, prefetch depth cannot be negative");
+      }
+      this.prefetchDepth = depth;
+      return this;
+    }
+
+    /**
+     * Offsets of every step-th record are collected, while the file is read,
+     *  CsvReader.index() returns them, when all records are read.
+     *  Only a memory mapped file can be indexed, it is read sequentially.
+     */
+    public CsvReaderBuilder indexEvery(
+      final int step) {
+      if (step <= 0){
+        throw new IllegalArgumentException(
+          String.format("Cannot create reader, index step = '%d' must be positive", step));
+      }
+      this.indexStep = step;
+      return this;
+    }
+
+    /**
+     * Chunk arrays of stream input are borrowed from the pool
+     *  and returned to it, when the reader is closed.
+     *  The buffer size is the pool buffer size.
+     */
+    public CsvReaderBuilder bufferPool(
+      @NotNull final ChunkBufferPool bufferPool) {
+      if (bufferPool == null){
+        throw new IllegalArgumentException(
+          "Cannot create reader, buffer pool cannot be null");
+      }
+      this.bufferPool = bufferPool;
+      return this;
+    }
+
     public CsvReader build() {
-      if (this.input == null){
+      if (this.input == null && this.path == null
+        && this.chars == null && this.bytes == null){
         throw new IllegalArgumentException(
           "Cannot create reader, input is not defined");
       }
-      return new CsvReader(
-        input,
+      if (byteScanning && !byteScannable(encoding)){
+        throw new IllegalArgumentException(
+          String.format("Cannot create reader, byte scanning is not supported " +
+            "for '%s' encoding", encoding));
+      }
+      if (rangeHeader != null && !byteScannable(encoding)){
+        throw new IllegalArgumentException(
+          String.format("Cannot create reader, a range is not supported " +
+            "for '%s' encoding", encoding));
+      }
+      if (bufferPool != null
+        && bufferSize != null
+        && bufferSize != bufferPool.bufferSize){
+        throw new IllegalArgumentException(
+          String.format("Cannot create reader, buffer size = '%d' differs " +
+            "from the pool buffer size = '%d'", bufferSize, bufferPool.bufferSize));
+      }
+      Storage storage = storage();
+      CsvReader reader = new CsvReader(
+        storage,
+        storage.source instanceof MappedChunkSource ? path : null,
         encoding,
         csvLineSeparator,
-        csvColumnSeparator,
-        bufferSize);
+        csvColumnSeparator);
+      reader.columnTypes.putAll(columnTypes);
+      reader.filters.putAll(filters);
+      reader.prefetchDepth = prefetchDepth;
+      reader.streamBufferSize = streamBufferSize();
+      reader.dictionaryColumns.addAll(dictionaryColumns);
+      reader.selectedNames = selectedNames;
+      reader.selectedIndexes = selectedIndexes;
+      if (rangeHeader != null){
+        reader.range(rangeStart, rangeEnd, rangeHeader);
+      }
+      if (indexStep > 0){
+        reader.indexEvery(indexStep);
+      }
+      return reader;
+    }
+
+    private Storage storage(){
+      if (chars != null){
+        return memoryStorage(chars, charsOffset, charsLength);
+      }
+      if (bytes != null){
+        if (!byteScannable(encoding)){
+          CharBuffer decoded = encoding.decode(bytes.duplicate());
+          char[] result = new char[decoded.remaining()];
+          decoded.get(result);
+          return memoryStorage(result, 0, result.length);
+        }
+        return new Storage(
+          bufferSize != null ? bufferSize : Math.max(bytes.remaining(), 1),
+          new MemoryChunkSource(bytes),
+          encoding,
+          true);
+      }
+      if (path == null){
+        return streamStorage(input, byteScanning);
+      }
+      try {
+        if (byteScannable(encoding)){
+          return new Storage(
+            bufferSize != null ? bufferSize : MAPPED_WINDOW_SIZE,
+            new MappedChunkSource(path),
+            encoding,
+            true);
+        }
+        return streamStorage(Files.newInputStream(path), false);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    private Storage memoryStorage(final char[] chars, final int offset, final int length){
+      return new Storage(
+        Math.max(offset + length, 1),
+        new MemoryChunkSource(chars, offset, length),
+        encoding,
+        false);
+    }
+
+    private int streamBufferSize(){
+      return bufferPool != null
+        ? bufferPool.bufferSize
+        : bufferSize != null ? bufferSize : BUFFER_SIZE;
+    }
+
+    private Storage streamStorage(final InputStream input, final boolean bytes){
+      int size = streamBufferSize();
+      ChunkSource source = Storage.source(size, input, encoding, bytes, bufferPool);
+      return new Storage(
+        size,
+        prefetchDepth > 0
+          ? new PrefetchChunkSource(source, size, bytes, prefetchDepth, bufferPool)
+          : source,
+        encoding,
+        bytes)
+        .pool(bufferPool);
+    }
+
+    private static boolean byteScannable(final Charset encoding){
+      return StandardCharsets.UTF_8.equals(encoding)
+        || encoding.canEncode()
+        && encoding.newEncoder().maxBytesPerChar() == 1;
     }
   }
 
+  /**
+   * For a mapped file the stream can be processed in parallel,
+   *  see CsvSpliterator
+   */
   public Stream<Map<String, String>> csvLines(){
-    Iterator var1 = new Iterator<Map<String, String>>() {
+    if (path != null){
+      CsvSpliterator spliterator = new CsvSpliterator(this);
+      return StreamSupport.stream(spliterator, false)
+        .onClose(spliterator::close);
+    }
+    Iterator<Map<String, String>> var1 = new Iterator<Map<String, String>>() {
 
       public boolean hasNext() {
-        if (csvHeader.isEmpty()){
+        if (!headerCalculated){
           CsvReader.this.calculateHeaders();
         }
         if (CsvReader.this.noMoreData){
@@ -143,74 +642,632 @@ public class CsvReader {
     };
 
     return StreamSupport.stream(
-      Spliterators.spliteratorUnknownSize(var1, 272), false);
+      Spliterators.spliteratorUnknownSize(var1, 272), false)
+      .onClose(this::close);
+  }
+
+  /**
+   * A cursor over csv records, an alternative to csvLines(),
+   *  the same row object is reused for all records
+   */
+  public CsvRow rows(){
+    return new CsvRow(this);
+  }
+
+  /**
+   * Records, which fields are found only when they are accessed,
+   *  for the rest of a record only its end is found.
+   *  The same record object is reused for all records,
+   *  it is valid until the stream moves to the next one, toMap() copies it.
+   */
+  public Stream<CsvRecord> records(){
+    final CsvRecord record = new CsvRecord(this);
+    Iterator<CsvRecord> iterator = new Iterator<CsvRecord>() {
+      boolean moved = false;
+      boolean hasRecord = false;
+
+      @Override
+      public boolean hasNext() {
+        if (!moved){
+          hasRecord = record.next();
+          moved = true;
+        }
+        return hasRecord;
+      }
+
+      @Override
+      public CsvRecord next() {
+        if (!hasNext()){
+          throw new NoSuchElementException();
+        }
+        moved = false;
+        return record;
+      }
+    };
+    return StreamSupport.stream(
+      Spliterators.spliteratorUnknownSize(iterator,
+        Spliterator.ORDERED | Spliterator.NONNULL), false)
+      .onClose(this::close);
+  }
+
+  /**
+   * Column vectors of records, an alternative to csvLines(),
+   *  the same batch object and its vectors are reused for all batches
+   */
+  public CsvBatch batches(final int rowsPerBatch){
+    return new CsvBatch(this, rowsPerBatch);
+  }
+
+  /**
+   * Pushes selected columns of every record to the handler,
+   *  until input ends or the handler stops parsing
+   * @return number of records passed to the handler
+   */
+  public long parse(@NotNull final CsvHandler handler){
+    if (handler == null){
+      throw new IllegalArgumentException(
+        "Cannot parse input, handler cannot be null");
+    }
+    if (!headerCalculated){
+      calculateHeaders();
+    }
+    final int[] fields = projection;
+    final CsvDictionary[] dictionaries = new CsvDictionary[fields.length];
+    final String[] columnNames = new String[fields.length];
+    for (int i = 0; i < fields.length; i++){
+      CsvColumnMetadata column = csvHeader.get(fields[i]);
+      columnNames[i] = column.columnName;
+      dictionaries[i] = column.dictionary;
+    }
+    handler.header(columnNames);
+    final FieldSlice slice = new FieldSlice();
+    long records = 0;
+    while (nextRecord()){
+      handler.startRecord();
+      for (int i = 0; i < fields.length; i++){
+        tokenizer.slice(fields[i], slice);
+        handler.field(i, dictionaries[i] == null
+          ? slice
+          : dictionaries[i].canonical(slice));
+      }
+      records++;
+      if (!handler.endRecord()){
+        break;
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Reads another input by the same reader, its chunk buffers are reused.
+   *  The current input is closed. The calculated header
+   *  (with column types and dictionaries) is reused,
+   *  if the header of the new input has the same columns.
+   *  A memory mapped file reader cannot be reset.
+   */
+  public CsvReader reset(@NotNull final InputStream input){
+    if (input == null){
+      throw new IllegalArgumentException(
+        "Cannot reset reader, input cannot be null");
+    }
+    if (path != null){
+      throw new IllegalStateException(
+        "Cannot reset reader of a memory mapped file");
+    }
+    storage.close();
+    //the buffer size of in-memory input is its length, not a stream one
+    ChunkSource source = Storage.source(
+      streamBufferSize, input, encoding, storage.bytes, storage.pool);
+    storage.reset(
+      prefetchDepth > 0
+        ? new PrefetchChunkSource(
+          source, streamBufferSize, storage.bytes, prefetchDepth, storage.pool)
+        : source,
+      streamBufferSize);
+    tokenizer.reset();
+    headerCalculated = false;
+    recordNumber = 0;
+    noMoreData = false;
+    separatorsLearned = false;
+    endOffset = Long.MAX_VALUE;
+    endAligned = true;
+    csvRecord = Maps.newHashMap();
+    return this;
+  }
+
+  /**
+   * Closes input, is called when the csv lines stream is closed
+   */
+  @Override
+  public void close(){
+    storage.close();
   }
 
   void calculateHeaders(){
-    Position fstLineSeparatorPosition = storage.positionOf(
-      this.csvLineSeparator);
-    if (fstLineSeparatorPosition.isFound){
-      String header = storage.value(fstLineSeparatorPosition);
-      final int[] columnPosition = {0};
-
-      Storage headerStorage = new Storage(
-        header.length(),
-        IOUtils.toInputStream(header, this.encoding),
-        this.encoding);
-      Position p = headerStorage.positionOf(csvColumnSeparator);
-      while (p.isFound){
-        int currentPosition = columnPosition[0]++;
-        csvHeader.put(
-          currentPosition,
-          CsvColumnMetadata.builder()
-            .position(currentPosition)
-            .name(headerValue(headerStorage.value(p)))
-            .build());
-        p = headerStorage.positionOf(csvColumnSeparator);
-      }
-      //handle the last column:
+    if (tokenizer.nextRecord(CsvTokenizer.UNBOUNDED, false)
+      && !tokenizer.lastRecord){
+      List<String> columnNames = Lists.newArrayListWithCapacity(tokenizer.fields);
+      for (int i = 0; i < tokenizer.fields; i++){
+        columnNames.add(headerValue(tokenizer.value(i)));
+      }
+      dataOffset = storage.bytes ? tokenizer.position : -1;
+      header(columnNames);
+    } else {
+      throw new IllegalArgumentException(
+        String.format("Could not find csv line separator %s, header = '%s'",
+          csvLineSeparator, tokenizer.record()));
+    }
+  }
+
+  /**
+   * Builds column metadata by header column names.
+   *  The header of a reset reader is kept, if the new header has the same columns
+   */
+  void header(final List<String> columnNames){
+    headerCalculated = true;
+    if (sameHeader(columnNames)){
+      return;
+    }
+    csvHeader.clear();
+    for (int i = 0; i < columnNames.size(); i++){
+      String name = columnNames.get(i);
+      CsvColumnMetadata declared = columnTypes.get(name);
       csvHeader.put(
-        columnPosition[0],
+        i,
         CsvColumnMetadata.builder()
-          .position(columnPosition[0])
-          .name(headerValue(headerStorage.value()))
+          .position(i)
+          .name(name)
+          .type(declared != null ? declared.type : null)
+          .scale(declared != null ? declared.scale : 0)
+          .pattern(declared != null ? declared.pattern : null)
+          .dictionary(dictionaryColumns.contains(name)
+            ? new CsvDictionary()
+            : null)
           .build());
-    } else {
-      throw new IllegalArgumentException(
-        String.format("Could not find csv line separator %s, header = 's'",
-          csvLineSeparator, storage.value()));
+    }
+    for (String dictionaryColumn : dictionaryColumns){
+      CsvColumnMetadata declared = columnTypes.get(dictionaryColumn);
+      if (declared != null && declared.type != CsvColumnType.STRING){
+        throw new IllegalArgumentException(
+          String.format("Dictionary column = '%s' cannot be declared as '%s'",
+            dictionaryColumn, declared.type));
+      }
+      if (csvHeader.values().stream()
+        .noneMatch(c -> c.columnName.equals(dictionaryColumn))){
+        throw new IllegalArgumentException(
+          String.format("Dictionary column = '%s' is not found in the header",
+            dictionaryColumn));
+      }
+    }
+    for (String declared : columnTypes.keySet()){
+      if (csvHeader.values().stream()
+        .noneMatch(c -> c.columnName.equals(declared))){
+        throw new IllegalArgumentException(
+          String.format("Declared column = '%s' is not found in the header",
+            declared));
+      }
+    }
+    columns = csvHeader.values().toArray(new CsvColumnMetadata[0]);
+    projection = projection();
+    filters();
+  }
+
+  /**
+   * The header of input, calculated if it is not yet,
+   *  can be given to readers of ranges of the same file
+   */
+  public CsvHeader header(){
+    if (!headerCalculated){
+      calculateHeaders();
+    }
+    List<String> columnNames = Lists.newArrayListWithCapacity(columns.length);
+    for (CsvColumnMetadata column : columns){
+      columnNames.add(column.columnName);
+    }
+    return new CsvHeader(columnNames, dataOffset);
+  }
+
+  /**
+   * @return offsets of every step-th record, collected while the file was read
+   */
+  public CsvIndex index(){
+    if (indexOffsets == null){
+      throw new IllegalStateException(
+        "Records are not indexed, see CsvReaderBuilder.indexEvery()");
+    }
+    if (!noMoreData){
+      throw new IllegalStateException(
+        "Index is available only when all records are read");
+    }
+    try {
+      return new CsvIndex(
+        indexStep,
+        recordNumber,
+        CsvIndex.trim(indexOffsets, indexSize),
+        Files.size(path),
+        CsvIndex.lastModified(path));
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
     }
   }
 
+  /**
+   * Moves the reader to the record, the next read record is it.
+   *  The file is mapped from the nearest indexed record,
+   *  at most step - 1 records are skipped without tokenizing their fields
+   * @param record number of a record from 0, the header is not a record
+   */
+  public CsvReader seek(@NotNull final CsvIndex index, final long record){
+    if (path == null){
+      throw new IllegalStateException(
+        "Only a reader of a memory mapped file can seek");
+    }
+    if (!index.valid(path)){
+      throw new IllegalStateException(
+        String.format("Index is stale, file = '%s' is changed", path));
+    }
+    moveTo(index.offset(record));
+    recordNumber = record - record % index.step;
+    int columns = csvHeader.size();
+    while (recordNumber < record && startRecord()){
+      tokenizer.skip(columns, true);
+    }
+    return this;
+  }
+
+  /**
+   * Maps the file from the offset of a record, the header is kept
+   */
+  void moveTo(final long offset){
+    if (!headerCalculated){
+      calculateHeaders();
+    }
+    storage.close();
+    try {
+      moveTo(new MappedChunkSource(path, offset, storage.pool));
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Reads the already mapped file from the offset of a record,
+   *  windows are sliced from the mapping, the header is kept
+   * @param file the whole file, mapped from its start
+   */
+  void moveTo(final ByteBuffer file, final long offset){
+    if (!headerCalculated){
+      calculateHeaders();
+    }
+    storage.close();
+    moveTo(new MemoryChunkSource(file, (int) offset));
+  }
+
+  private void moveTo(final ChunkSource source){
+    storage.reset(source);
+    tokenizer.reset();
+    noMoreData = false;
+    separatorsLearned = false;
+    endOffset = Long.MAX_VALUE;
+    endAligned = true;
+    indexOffsets = null; //offsets are collected only by a sequential read
+  }
+
+  void indexEvery(final int step){
+    if (path == null){
+      throw new IllegalStateException(
+        "Only a memory mapped file can be indexed");
+    }
+    if (recordNumber > 0){
+      throw new IllegalStateException(
+        "Records can be indexed only from the start of the file");
+    }
+    indexStep = step;
+    indexOffsets = new long[16];
+    indexSize = 0;
+  }
+
+  /**
+   * Starts the next record in the tokenizer, collects its offset for the index
+   * @return false if there is no more data
+   */
+  private boolean startRecord(){
+    if (!tokenizer.startRecord()){
+      return false;
+    }
+    if (indexOffsets != null && recordNumber % indexStep == 0){
+      if (indexSize == indexOffsets.length){
+        indexOffsets = Arrays.copyOf(indexOffsets, indexSize << 1);
+      }
+      indexOffsets[indexSize++] = tokenizer.recordStart;
+    }
+    recordNumber++;
+    return true;
+  }
+
+  /**
+   * Moves a mapped file reader to the 1st record of the range
+   */
+  private void range(final long start, final long end, final CsvHeader header){
+    header(header.columnNames);
+    dataOffset = header.dataOffset;
+    endOffset = end;
+    endAligned = end <= header.dataOffset;
+    long first = Math.max(start, header.dataOffset);
+    if (first > header.dataOffset){
+      first = RecordStarts.resync(this, first);
+    }
+    storage.close();
+    try {
+      storage.reset(new MappedChunkSource(path, first, storage.pool));
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    tokenizer.reset();
+  }
+
   void handleCsvLine(){
-    csvRecord = Maps.newHashMap();
-    csvHeader.entrySet().stream()
-      .filter(e -> !noMoreData)
-      .forEach(entry -> {
-        if (entry.getKey() == (csvHeader.size() -1)){ //the last column
-          handleColumn(csvHeader.size()-1,
-            csvLineSeparator, ()-> {
-              //the last column in the last line:
-              String value = storage.value();
-              CsvColumnMetadata lastColumn = csvHeader.get(csvHeader.size() - 1);
-              csvRecord.put(lastColumn.columnName,
-                value.substring(lastColumn.startSeparator.length(),
-                  value.length() - lastColumn.startSeparator.length()));
-              noMoreData = true;
-            });
-        } else if (entry.getKey() == 0) {
-          handleColumn(entry.getKey(),
-            csvColumnSeparator, ()-> noMoreData = true);
-        } else {
-          handleColumn(entry.getKey(),
-            csvColumnSeparator, ()-> {
-              throw new IllegalStateException(
-                String.format(
-                  "Could not extract a value for not last column, current line = '%s'",
-                  storage.value()));
-            });
+    csvRecord = nextRecord() ? record() : Maps.newHashMap();
+  }
+
+  /**
+   * @return selected columns of the current record
+   */
+  Map<String, String> record(){
+    Map<String, String> result = Maps.newHashMap();
+    for (int i : projection){
+      result.put(columns[i].columnName, value(i));
+    }
+    return result;
+  }
+
+  /**
+   * @return value of a field of the current record,
+   *  the canonical instance for a dictionary column
+   */
+  String value(final int field){
+    CsvDictionary dictionary = columns[field].dictionary;
+    return dictionary == null
+      ? tokenizer.value(field)
+      : dictionary.canonical(tokenizer.slice(field, filterSlice));
+  }
+
+  /**
+   * Finds fields of the next record in the tokenizer, values are not extracted
+   * @return false if there is no more data
+   */
+  boolean nextRecord(){
+    int columns = csvHeader.size();
+    while (true){
+      if (noMoreData
+        || endOfRange()
+        || !startRecord()){
+        noMoreData = true;
+        return false;
+      }
+      if (matches(columns)){
+        break;
+      }
+      //only the end of a not matching record is found
+      tokenizer.skip(columns, true);
+      if (tokenizer.lastRecord){
+        noMoreData = true;
+        return false;
+      }
+    }
+    tokenizer.tokenize(CsvTokenizer.UNBOUNDED, columns, true);
+    if (tokenizer.lastRecord){
+      noMoreData = true;
+      if (tokenizer.fields == 1 && columns > 1){
+        //the rest of input without column separators
+        return false;
+      }
+    }
+    if (tokenizer.fields < columns){
+      throw new IllegalStateException(
+        String.format(
+          "Could not extract a value for not last column, current line = '%s'",
+          tokenizer.record()));
+    }
+    if (!separatorsLearned){
+      learnSeparators();
+    }
+    return true;
+  }
+
+  /**
+   * The end offset is resynchronized, when it is reached for the 1st time
+   * @return true if the next record starts at the end offset or after it
+   * @throws IllegalStateException if the last record crosses the end offset,
+   *  so the end is not a record start, and the next range would read a part
+   *  of the record
+   */
+  private boolean endOfRange(){
+    if (tokenizer.position < endOffset){
+      return false;
+    }
+    if (!endAligned){
+      endAligned = true;
+      endOffset = RecordStarts.resync(this, endOffset);
+      return endOfRange();
+    }
+    if (tokenizer.recordStart < endOffset && tokenizer.position > endOffset){
+      throw new IllegalStateException(
+        String.format("Record at offset = '%d' crosses the range end = '%d', " +
+          "the end is not resynchronized to a record start",
+          tokenizer.recordStart, endOffset));
+    }
+    return true;
+  }
+
+  /**
+   * Finds only the start of the next record, after the end of the current one,
+   *  its fields are found by tokenize() on demand.
+   *  The 1st record is tokenized completely, to learn separators
+   * @return false if there is no more data
+   */
+  boolean nextLazyRecord(){
+    if (!separatorsLearned){
+      return nextRecord();
+    }
+    int columns = csvHeader.size();
+    while (true){
+      if (!noMoreData && !tokenizer.recordFinished){
+        tokenizer.skip(columns, true);
+        noMoreData = tokenizer.lastRecord;
+      }
+      if (noMoreData
+        || endOfRange()
+        || !startRecord()){
+        noMoreData = true;
+        return false;
+      }
+      if (matches(columns)){
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Finds boundaries of the current record fields till the field inclusive
+   */
+  void tokenize(final int field){
+    if (tokenizer.fields > field){
+      return;
+    }
+    tokenizer.tokenize(field, csvHeader.size(), true);
+    if (tokenizer.fields <= field){
+      throw new IllegalStateException(
+        String.format(
+          "Could not extract a value for not last column, current line = '%s'",
+          tokenizer.record()));
+    }
+  }
+
+  /**
+   * Starts the record at the current position, filters are not applied,
+   *  its fields are found by tokenize() on demand
+   * @return false if there is no more data
+   */
+  boolean startUnfilteredRecord(){
+    if (noMoreData || !tokenizer.startRecord()){
+      noMoreData = true;
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Tokenizes the current record only till filtered columns
+   * @return false if any filter does not match,
+   *  a too short record matches, it is reported by nextRecord()
+   */
+  private boolean matches(final int columns){
+    for (int i = 0; i < filterColumns.length; i++){
+      int column = filterColumns[i];
+      tokenizer.tokenize(column, columns, true);
+      if (tokenizer.fields <= column){
+        return true;
+      }
+      if (!filterPredicates.get(i).test(
+        tokenizer.slice(column, filterSlice))){
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  /**
+   * Keeps quoting of the 1st line columns in the header metadata
+   */
+  private void learnSeparators(){
+    for (int i = 0; i < tokenizer.fields; i++){
+      String separator = i == csvHeader.size() - 1
+        ? csvLineSeparator
+        : csvColumnSeparator;
+      if (tokenizer.fieldQuoted[i]){
+        csvHeader.get(i).setStartSeparator("\"");
+        csvHeader.get(i).setEndSeparator(String.format("\"%s", separator));
+      } else {
+        csvHeader.get(i).setStartSeparator(""); //empty value
+        csvHeader.get(i).setEndSeparator(separator);
+      }
+    }
+    tokenizer.learn(csvHeader.size());
+    separatorsLearned = true;
+  }
+
+  private boolean sameHeader(final List<String> columnNames){
+    if (csvHeader.size() != columnNames.size()){
+      return false;
+    }
+    for (int i = 0; i < columnNames.size(); i++){
+      if (!csvHeader.get(i).columnName.equals(columnNames.get(i))){
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Resolves filtered columns by the header
+   */
+  private void filters(){
+    Map<Integer, Predicate<CharSequence>> byColumn = Maps.newTreeMap();
+    for (Map.Entry<String, Predicate<CharSequence>> filter : filters.entrySet()){
+      CsvColumnMetadata column = csvHeader.values().stream()
+        .filter(c -> c.columnName.equals(filter.getKey()))
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException(
+          String.format("Filtered column = '%s' is not found in the header",
+            filter.getKey())));
+      byColumn.put(column.columnPosition, filter.getValue());
+    }
+    filterColumns = byColumn.keySet().stream().mapToInt(i -> i).toArray();
+    filterPredicates = Lists.newArrayList(byColumn.values());
+  }
+
+  /**
+   * Resolves selected columns by the header
+   */
+  private int[] projection(){
+    if (selectedNames == null && selectedIndexes == null){
+      int[] result = new int[csvHeader.size()];
+      for (int i = 0; i < result.length; i++){
+        result[i] = i;
+      }
+      return result;
+    }
+    int[] result;
+    if (selectedNames != null){
+      result = new int[selectedNames.length];
+      for (int i = 0; i < result.length; i++){
+        final String name = selectedNames[i];
+        result[i] = csvHeader.values().stream()
+          .filter(c -> c.columnName.equals(name))
+          .mapToInt(c -> c.columnPosition)
+          .findFirst()
+          .orElseThrow(() -> new IllegalArgumentException(
+            String.format("Selected column = '%s' is not found in the header",
+              name)));
+      }
+    } else {
+      result = selectedIndexes.clone();
+      for (int index : result){
+        if (index < 0 || index >= csvHeader.size()){
+          throw new IllegalArgumentException(
+            String.format("Selected column index = '%d' is out of the header " +
+              "range, columns = '%d'", index, csvHeader.size()));
         }
-      });
+      }
+    }
+    if (Arrays.stream(result).distinct().count() != result.length){
+      throw new IllegalArgumentException(
+        String.format("Selected columns contain duplicates: '%s'",
+          Arrays.toString(result)));
+    }
+    return result;
   }
 
   private String headerValue(String raw){
@@ -236,66 +1293,4 @@ public class CsvReader {
       return raw;
     }
   }
-
-  private void handleColumn(
-    final int columnPosition,
-    final String separator,
-    final Executor notFound){
-    if (StringUtils.isEmpty(csvHeader.get(columnPosition).endSeparator)){
-      Position p = storage.positionOf(separator);
-      if (p.isFound){
-        setSeparatorAnd1stLine(columnPosition, separator, notFound);
-      } else {
-        notFound.execute();
-      }
-    } else {
-      final Position p = storage.positionOf(
-        csvHeader.get(columnPosition).endSeparator);
-      if (p.isFound){
-        csvRecord.put(
-          csvHeader.get(columnPosition).columnName,
-          storage.value(p)
-            .substring(csvHeader.get(columnPosition).startSeparator.length()));
-      } else {
-        //the last column in the last line:
-        notFound.execute();
-      }
-    }
-  }
-
-  private void setSeparatorAnd1stLine(
-    final int columnPosition,
-    final String separator,
-    final Executor notFound){
-    Position separatorPosition = storage.positionOf(separator);
-    if (separatorPosition.isFound) {
-      String value = storage.value(separatorPosition);
-      if (value.length() > 0 && value.charAt(0) == '"') {
-        csvHeader.get(columnPosition).setEndSeparator(
-          String.format("\"%s", separator));
-        csvHeader.get(columnPosition).setStartSeparator("\"");
-        //actually, if it looks as: "${csvColumnSeparator}
-        if (value.charAt(value.length() - 1) == '"') {
-          //skip " in the fst and last positions:
-          csvRecord.put(csvHeader.get(columnPosition).columnName,
-            value.substring(1, value.length() - 1));
-        } else {
-          Position p = storage.positionOf(
-            csvHeader.get(columnPosition).endSeparator);
-          if (p.isFound) {
-            csvRecord.put(csvHeader.get(columnPosition).columnName,
-              value.substring(1) + separator + storage.value(p));
-          } else {
-            notFound.execute();
-          }
-        }
-      } else {
-        csvHeader.get(columnPosition).setEndSeparator(separator);
-        csvHeader.get(columnPosition).setStartSeparator(""); //empty value
-        csvRecord.put(csvHeader.get(columnPosition).columnName, value);
-      }
-    } else {
-      notFound.execute();
-    }
-  }
 }
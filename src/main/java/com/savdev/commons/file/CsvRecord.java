@@ -0,0 +1,27 @@
+package com.savdev.commons.file;
+
+/**
+ * A csv record, which fields are found only when they are accessed,
+ *  see CsvReader.records(). Only the start of a record is found,
+ *  when the reader moves to it, its fields are tokenized
+ *  till the accessed one, their boundaries are kept for the record.
+ *  A too short record is reported, when a missing field is accessed.
+ */
+public class CsvRecord extends CsvRow {
+
+  CsvRecord(final CsvReader reader) {
+    super(reader);
+  }
+
+  @Override
+  boolean move() {
+    return reader.nextLazyRecord();
+  }
+
+  @Override
+  int field(final int columnIndex) {
+    int field = super.field(columnIndex);
+    reader.tokenize(field);
+    return field;
+  }
+}
@@ -0,0 +1,297 @@
+package com.savdev.commons.file;
+
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+
+/**
+ * A view of the current csv record, reused for all records of a reader.
+ *  No map is created per record, values are extracted only when requested.
+ *  slice() gives a value without creating a String.
+ *  If columns are selected by CsvReaderBuilder.columns(),
+ *  the row contains only them, a column index is a position in the selection.
+ */
+public class CsvRow {
+
+  //declared types, readable by typed accessors:
+  private static final int INTEGERS =
+    mask(CsvColumnType.INT) | mask(CsvColumnType.LONG);
+  private static final int DECIMALS = INTEGERS | mask(CsvColumnType.DECIMAL);
+  private static final int NUMBERS = DECIMALS | mask(CsvColumnType.DOUBLE);
+  private static final int DATES = mask(CsvColumnType.DATE);
+
+  final CsvReader reader;
+  //calculated from the header by the 1st next(),
+  //only selected columns, in the order of selection:
+  int[] fields; //tokenizer fields of row columns
+  String[] columnNames;
+  Map<String, Integer> columnIndexes;
+  CsvColumnMetadata[] columnMetadata;
+  FieldSlice[] slices;
+  boolean hasRecord = false;
+
+  CsvRow(final CsvReader reader) {
+    this.reader = reader;
+  }
+
+  /**
+   * Moves the row to the next record
+   * @return false if there are no more records
+   */
+  public boolean next() {
+    if (columnNames == null) {
+      index();
+    }
+    hasRecord = move();
+    return hasRecord;
+  }
+
+  /**
+   * Moves the reader to the next record
+   */
+  boolean move() {
+    return reader.nextRecord();
+  }
+
+  /**
+   * @return the tokenizer field of the column, its boundaries are found
+   */
+  int field(final int columnIndex) {
+    return fields[columnIndex];
+  }
+
+  public int columns() {
+    index();
+    return columnNames.length;
+  }
+
+  public String columnName(final int columnIndex) {
+    index();
+    checkIndex(columnIndex);
+    return columnNames[columnIndex];
+  }
+
+  /**
+   * @return index of the column, or -1 if there is no such column
+   */
+  public int columnIndex(final String columnName) {
+    index();
+    Integer result = columnIndexes.get(columnName);
+    return result != null ? result : -1;
+  }
+
+  public String get(final int columnIndex) {
+    checkRecord();
+    checkIndex(columnIndex);
+    return reader.value(field(columnIndex));
+  }
+
+  public String get(final String columnName) {
+    return get(existingIndex(columnName));
+  }
+
+  /**
+   * @return the value as a window over the read input, without a String,
+   *  the same object is reused for the column, valid until next()
+   */
+  public CharSequence slice(final int columnIndex) {
+    checkRecord();
+    checkIndex(columnIndex);
+    return reader.tokenizer.slice(field(columnIndex), slices[columnIndex]);
+  }
+
+  public CharSequence slice(final String columnName) {
+    return slice(existingIndex(columnName));
+  }
+
+  /**
+   * @return code of the value in the dictionary of the column,
+   *  see CsvReaderBuilder.dictionaryColumn()
+   */
+  public int code(final int columnIndex) {
+    CsvDictionary dictionary = dictionary(columnIndex);
+    return dictionary.code(slice(columnIndex));
+  }
+
+  public int code(final String columnName) {
+    return code(existingIndex(columnName));
+  }
+
+  public CsvDictionary dictionary(final int columnIndex) {
+    index();
+    checkIndex(columnIndex);
+    CsvDictionary dictionary = columnMetadata[columnIndex].dictionary;
+    if (dictionary == null) {
+      throw new IllegalStateException(
+        String.format("Column = '%s' is not a dictionary column",
+          columnNames[columnIndex]));
+    }
+    return dictionary;
+  }
+
+  public boolean isEmpty(final int columnIndex) {
+    return slice(columnIndex).length() == 0;
+  }
+
+  public boolean isEmpty(final String columnName) {
+    return isEmpty(existingIndex(columnName));
+  }
+
+  //typed accessors parse the value without a String:
+
+  public int getInt(final int columnIndex) {
+    return FieldDecoder.parseInt(typed(columnIndex, INTEGERS));
+  }
+
+  public int getInt(final String columnName) {
+    return getInt(existingIndex(columnName));
+  }
+
+  public long getLong(final int columnIndex) {
+    return FieldDecoder.parseLong(typed(columnIndex, INTEGERS));
+  }
+
+  public long getLong(final String columnName) {
+    return getLong(existingIndex(columnName));
+  }
+
+  public double getDouble(final int columnIndex) {
+    return FieldDecoder.parseDouble(typed(columnIndex, NUMBERS));
+  }
+
+  public double getDouble(final String columnName) {
+    return getDouble(existingIndex(columnName));
+  }
+
+  /**
+   * @return unscaled value, for instance 1234 for "12.34" with the scale 2
+   */
+  public long getDecimal(final int columnIndex, final int scale) {
+    return FieldDecoder.parseDecimal(typed(columnIndex, DECIMALS), scale);
+  }
+
+  public long getDecimal(final String columnName, final int scale) {
+    return getDecimal(existingIndex(columnName), scale);
+  }
+
+  /**
+   * Uses the declared scale of the column, see CsvReaderBuilder.decimalColumn()
+   */
+  public long getDecimal(final int columnIndex) {
+    return getDecimal(columnIndex, declared(columnIndex, CsvColumnType.DECIMAL).scale);
+  }
+
+  public long getDecimal(final String columnName) {
+    return getDecimal(existingIndex(columnName));
+  }
+
+  /**
+   * @param pattern every 'y', 'M', 'd' is a single digit, for instance "yyyy-MM-dd"
+   * @return days since 1970-01-01, see LocalDate.ofEpochDay()
+   */
+  public long getEpochDay(final int columnIndex, final String pattern) {
+    return FieldDecoder.parseEpochDay(typed(columnIndex, DATES), pattern);
+  }
+
+  public long getEpochDay(final String columnName, final String pattern) {
+    return getEpochDay(existingIndex(columnName), pattern);
+  }
+
+  /**
+   * Uses the declared pattern of the column, see CsvReaderBuilder.dateColumn()
+   */
+  public long getEpochDay(final int columnIndex) {
+    return getEpochDay(columnIndex, declared(columnIndex, CsvColumnType.DATE).pattern);
+  }
+
+  public long getEpochDay(final String columnName) {
+    return getEpochDay(existingIndex(columnName));
+  }
+
+  /**
+   * @return a copy of the current record as csvLines() returns it
+   */
+  public Map<String, String> toMap() {
+    checkRecord();
+    Map<String, String> result = Maps.newHashMapWithExpectedSize(columnNames.length);
+    for (int i = 0; i < columnNames.length; i++) {
+      result.put(columnNames[i], reader.value(field(i)));
+    }
+    return result;
+  }
+
+  private void index() {
+    if (columnNames != null) {
+      return;
+    }
+    if (!reader.headerCalculated) {
+      reader.calculateHeaders();
+    }
+    fields = reader.projection;
+    columnNames = new String[fields.length];
+    columnIndexes = Maps.newHashMapWithExpectedSize(columnNames.length);
+    columnMetadata = new CsvColumnMetadata[columnNames.length];
+    slices = new FieldSlice[columnNames.length];
+    for (int i = 0; i < fields.length; i++) {
+      CsvColumnMetadata column = reader.csvHeader.get(fields[i]);
+      columnNames[i] = column.columnName;
+      columnIndexes.put(column.columnName, i);
+      columnMetadata[i] = column;
+      slices[i] = new FieldSlice();
+    }
+  }
+
+  /**
+   * @param types mask of declared types, which can be read by an accessor,
+   *              a not declared column can be read by any of them
+   */
+  private CharSequence typed(final int columnIndex, final int types) {
+    CharSequence value = slice(columnIndex);
+    CsvColumnType type = columnMetadata[columnIndex].type;
+    if (type != null && (mask(type) & types) == 0) {
+      throw new IllegalStateException(
+        String.format("Column = '%s' is declared as '%s'",
+          columnNames[columnIndex], type));
+    }
+    return value;
+  }
+
+  private CsvColumnMetadata declared(final int columnIndex, final CsvColumnType type) {
+    index();
+    checkIndex(columnIndex);
+    if (columnMetadata[columnIndex].type != type) {
+      throw new IllegalStateException(
+        String.format("Column = '%s' is not declared as '%s'",
+          columnNames[columnIndex], type));
+    }
+    return columnMetadata[columnIndex];
+  }
+
+  private static int mask(final CsvColumnType type) {
+    return 1 << type.ordinal();
+  }
+
+  private int existingIndex(final String columnName) {
+    int columnIndex = columnIndex(columnName);
+    if (columnIndex == -1) {
+      throw new IllegalArgumentException(
+        String.format("Column = '%s' is not found in the header", columnName));
+    }
+    return columnIndex;
+  }
+
+  private void checkIndex(final int columnIndex) {
+    if (columnIndex < 0 || columnIndex >= columnNames.length) {
+      throw new IllegalArgumentException(
+        String.format("Column index = '%d' is out of the header range, columns = '%d'",
+          columnIndex, columnNames.length));
+    }
+  }
+
+  private void checkRecord() {
+    if (!hasRecord) {
+      throw new IllegalStateException(
+        "There is no current record, next() must return true before");
+    }
+  }
+}
@@ -0,0 +1,212 @@
+package com.savdev.commons.file;
+
+import com.google.common.collect.Sets;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Splits a mapped csv file by byte ranges, used by CsvReader.csvLines().
+ *  A split owns records, starting inside its range,
+ *  every split reads them by its own reader with the header of the 1st one.
+ *  Ranges are split only at record starts: the splitting thread resyncs
+ *  the middle of its own range to a record start, see RecordStarts.resync(),
+ *  so a quoted line separator is not taken for a record end.
+ *  A reader fails, if its last record crosses the range end.
+ *  Readers of splits are closed by close(), the stream close handler,
+ *  even if the stream is not read till the end.
+ */
+class CsvSpliterator implements Spliterator<Map<String, String>> {
+
+  static final long MIN_SPLIT_SIZE = 1024 * 1024;
+
+  final CsvReader root; //owns the header
+  long minSplitSize = MIN_SPLIT_SIZE;
+  //not closed readers of all splits, shared by them
+  final Set<CsvReader> readers;
+
+  //the range of record starts, start is a record start:
+  long start;
+  final long end;
+  //null until the 1st record of the range is read
+  CsvReader reader;
+  boolean finished = false;
+
+  CsvSpliterator(final CsvReader root) {
+    this.root = root;
+    this.readers = Sets.newConcurrentHashSet();
+    this.reader = root;
+    this.start = root.tokenizer.position;
+    try {
+      this.end = Math.min(Files.size(root.path), root.endOffset);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private CsvSpliterator(
+    final CsvSpliterator parent,
+    final long start,
+    final long end,
+    final CsvReader reader) {
+    this.root = parent.root;
+    this.minSplitSize = parent.minSplitSize;
+    this.readers = parent.readers;
+    this.start = start;
+    this.end = end;
+    this.reader = reader;
+  }
+
+  @Override
+  public boolean tryAdvance(
+    final Consumer<? super Map<String, String>> action) {
+    if (!sync()) {
+      return false;
+    }
+    reader.handleCsvLine();
+    if (reader.csvRecord.isEmpty()) {
+      finish();
+      return false;
+    }
+    action.accept(reader.csvRecord);
+    return true;
+  }
+
+  /**
+   * The prefix range is returned, the current reader goes with it
+   */
+  @Override
+  public Spliterator<Map<String, String>> trySplit() {
+    header();
+    //record offsets are indexed only by a sequential read
+    if (finished || root.indexOffsets != null) {
+      return null;
+    }
+    long position = reader != null ? reader.tokenizer.position : start;
+    long remaining = end - position;
+    if (remaining < minSplitSize << 1) {
+      return null;
+    }
+    long middle = RecordStarts.resync(root, position + remaining / 2);
+    if (middle <= position || middle >= end) {
+      return null;
+    }
+    if (reader != null) {
+      reader.endOffset = middle;
+    }
+    CsvSpliterator prefix = new CsvSpliterator(this, position, middle, reader);
+    this.start = middle;
+    this.reader = null;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    if (finished) {
+      return 0;
+    }
+    return end - (reader != null ? reader.tokenizer.position : start);
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL;
+  }
+
+  private void header() {
+    if (!root.headerCalculated) {
+      root.calculateHeaders();
+      if (reader == root) {
+        start = root.tokenizer.position;
+      }
+    }
+  }
+
+  /**
+   * @return false if the range does not contain records
+   */
+  private boolean sync() {
+    header();
+    if (finished) {
+      return false;
+    }
+    if (reader != null) {
+      return true;
+    }
+    if (start < end) {
+      reader = reader(start);
+      readers.add(reader);
+      return true;
+    }
+    finish();
+    return false;
+  }
+
+  private CsvReader reader(final long offset) {
+    CsvReader result = new CsvReader(
+      storage(offset),
+      root.path,
+      root.encoding,
+      root.csvLineSeparator,
+      root.csvColumnSeparator);
+    for (CsvColumnMetadata column : root.csvHeader.values()) {
+      result.csvHeader.put(
+        column.columnPosition,
+        CsvColumnMetadata.builder()
+          .position(column.columnPosition)
+          .name(column.columnName)
+          .type(column.type)
+          .scale(column.scale)
+          .pattern(column.pattern)
+          //a dictionary is not thread safe, every split has its own
+          .dictionary(column.dictionary != null ? new CsvDictionary() : null)
+          .build());
+    }
+    result.columns = result.csvHeader.values().toArray(new CsvColumnMetadata[0]);
+    result.headerCalculated = true;
+    result.projection = root.projection;
+    result.filterColumns = root.filterColumns;
+    result.filterPredicates = root.filterPredicates;
+    result.endOffset = end;
+    return result;
+  }
+
+  private Storage storage(final long offset) {
+    try {
+      return new Storage(
+        root.storage.bufferSize,
+        new MappedChunkSource(root.path, offset),
+        root.encoding,
+        true);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void finish() {
+    finished = true;
+    if (reader != null && reader != root) {
+      readers.remove(reader);
+      reader.close();
+    }
+    reader = null;
+  }
+
+  /**
+   * Closes readers of all splits and the root reader
+   */
+  void close() {
+    try {
+      for (CsvReader split : readers) {
+        readers.remove(split);
+        split.close();
+      }
+    } finally {
+      root.close();
+    }
+  }
+}
@@ -0,0 +1,484 @@
+package com.savdev.commons.file;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.TreeSet;
+
+/**
+ * Splits csv records into fields in a single forward pass. Used only by CsvReader.
+ *  Column separator, line separator and a closing quote followed by any of them
+ *  are recognised by one Aho-Corasick automaton,
+ *  so every char of input is inspected only once.
+ *  In bytes mode the automaton runs over encoded separators and raw bytes.
+ *  Field boundaries are absolute offsets in Storage,
+ *  values are extracted only when they are requested.
+ */
+class CsvTokenizer {
+
+  static final int UNBOUNDED = -1;
+  static final char QUOTE = '"';
+
+  //token types, also used as automaton output bits:
+  static final int END_OF_INPUT = 0;
+  static final int COLUMN_SEPARATOR = 1;
+  static final int LINE_SEPARATOR = 1 << 1;
+  static final int QUOTED_COLUMN_SEPARATOR = 1 << 2;
+  static final int QUOTED_LINE_SEPARATOR = 1 << 3;
+
+  private static final int LINE_SEPARATORS =
+    LINE_SEPARATOR | QUOTED_LINE_SEPARATOR;
+
+  final Storage storage;
+  final String csvColumnSeparator;
+  final String csvLineSeparator;
+
+  //automaton, symbols not used by separators share the class 0,
+  //a symbol is a char, or an unsigned byte in bytes mode:
+  private final int[] latin1Classes = new int[256];
+  private final int[] otherSymbols;
+  private final int[] otherClasses;
+  private final int classes;
+  private final int[] transitions; //state * classes + symbol class
+  private final int[] outputs; //token types, recognised in a state
+  private final int[] tokenLengths = new int[QUOTED_LINE_SEPARATOR + 1];
+  private final int quote;
+
+  //current record:
+  long position = 0; //the next char to inspect
+  long recordStart = 0;
+  int fields = 0;
+  long[] fieldStarts = new long[16];
+  long[] fieldEnds = new long[16];
+  boolean[] fieldQuoted = new boolean[16];
+  boolean lastRecord = false; //the record is finished by the end of input
+  boolean recordFinished = true; //all fields of the record are found
+  private long fieldEnd; //the end of the last scanned field
+  //results of scanChunk():
+  private int scanState;
+  private int scanIndex;
+  long inspected; //number of symbols run through the automaton
+
+  //record pattern, learned from the 1st record:
+  boolean[] learnedQuoted; //null - not learned
+  private int[] learnedMasks; //token mask of every column
+
+  CsvTokenizer(
+    final Storage storage,
+    final String csvColumnSeparator,
+    final String csvLineSeparator) {
+    this.storage = storage;
+    this.csvColumnSeparator = csvColumnSeparator;
+    this.csvLineSeparator = csvLineSeparator;
+    this.position = storage.readOffset();
+
+    final int[][] tokens = {
+      symbols(csvColumnSeparator),
+      symbols(csvLineSeparator),
+      symbols(QUOTE + csvColumnSeparator),
+      symbols(QUOTE + csvLineSeparator)};
+    final int[] quoteSymbols = symbols(String.valueOf(QUOTE));
+    if (quoteSymbols.length != 1) {
+      throw new IllegalArgumentException(
+        String.format("Quote must be a single symbol in '%s' encoding",
+          storage.encoding));
+    }
+    this.quote = quoteSymbols[0];
+
+    TreeSet<Integer> alphabet = new TreeSet<>();
+    int maxStates = 1;
+    for (int[] token : tokens) {
+      for (int c : token) {
+        alphabet.add(c);
+      }
+      maxStates += token.length;
+    }
+    int cls = 1;
+    int others = 0;
+    for (int c : alphabet) {
+      if (c < latin1Classes.length) {
+        latin1Classes[c] = cls++;
+      } else {
+        others++;
+      }
+    }
+    this.otherSymbols = new int[others];
+    this.otherClasses = new int[others];
+    others = 0;
+    for (int c : alphabet) {
+      if (c >= latin1Classes.length) {
+        otherSymbols[others] = c;
+        otherClasses[others++] = cls++;
+      }
+    }
+    this.classes = cls;
+
+    //trie of all tokens, -1 - no transition yet
+    this.transitions = new int[maxStates * classes];
+    this.outputs = new int[maxStates];
+    Arrays.fill(transitions, -1);
+    int states = 1;
+    for (int t = 0; t < tokens.length; t++) {
+      int state = 0;
+      for (int c : tokens[t]) {
+        int index = state * classes + classOf(c);
+        if (transitions[index] == -1) {
+          transitions[index] = states++;
+        }
+        state = transitions[index];
+      }
+      outputs[state] |= 1 << t;
+      tokenLengths[1 << t] = tokens[t].length;
+    }
+
+    //failure links, turn the trie into a complete transition table
+    int[] failure = new int[states];
+    Deque<Integer> queue = new ArrayDeque<>();
+    queue.add(0);
+    while (!queue.isEmpty()) {
+      int state = queue.poll();
+      for (int c = 0; c < classes; c++) {
+        int index = state * classes + c;
+        int next = transitions[index];
+        int fallback = state == 0 ? 0 : transitions[failure[state] * classes + c];
+        if (next == -1) {
+          transitions[index] = fallback;
+        } else {
+          failure[next] = fallback;
+          outputs[next] |= outputs[fallback];
+          queue.add(next);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return chars of a token, or its encoded unsigned bytes in bytes mode
+   */
+  private int[] symbols(final String token) {
+    if (!storage.bytes) {
+      return token.chars().toArray();
+    }
+    byte[] encoded = token.getBytes(storage.encoding);
+    int[] result = new int[encoded.length];
+    for (int i = 0; i < encoded.length; i++) {
+      result[i] = encoded[i] & 0xFF;
+    }
+    return result;
+  }
+
+  /**
+   * Starts from the current read offset of a reset storage
+   */
+  void reset() {
+    position = storage.readOffset();
+    recordStart = position;
+    fields = 0;
+    lastRecord = false;
+    recordFinished = true;
+    learnedQuoted = null;
+    learnedMasks = null;
+  }
+
+  /**
+   * Keeps quoting of every column of the current record,
+   *  next records with the same quoting are tokenized by tokenizeLearned()
+   */
+  void learn(final int columns) {
+    if (fields != columns) {
+      return;
+    }
+    learnedQuoted = Arrays.copyOf(fieldQuoted, columns);
+    learnedMasks = new int[columns];
+    for (int i = 0; i < columns; i++) {
+      learnedMasks[i] = mask(i == columns - 1, learnedQuoted[i]);
+    }
+  }
+
+  /**
+   * Finds boundaries of all fields of the next record
+   * @param columns expected number of columns, the last column is finished
+   *                only by the line separator, UNBOUNDED - any number
+   * @param quotes if a field, started with a quote, ends with the quote
+   * @return false if there is no more data
+   */
+  boolean nextRecord(final int columns, final boolean quotes) {
+    if (!startRecord()) {
+      return false;
+    }
+    tokenize(UNBOUNDED, columns, quotes);
+    return true;
+  }
+
+  /**
+   * Starts the next record, its fields are found by tokenize()
+   * @return false if there is no more data
+   */
+  boolean startRecord() {
+    storage.release(position);
+    recordStart = position;
+    fields = 0;
+    if (storage.unitAt(position) == -1) {
+      lastRecord = true;
+      recordFinished = true;
+      return false;
+    }
+    recordFinished = false;
+    return true;
+  }
+
+  /**
+   * Finds boundaries of the current record fields till the field inclusive,
+   *  or till the end of the record
+   * @param field UNBOUNDED - till the end of the record
+   */
+  void tokenize(final int field, final int columns, final boolean quotes) {
+    if (field == UNBOUNDED
+      && fields == 0
+      && quotes
+      && learnedMasks != null
+      && learnedMasks.length == columns
+      && !recordFinished
+      && tokenizeLearned()) {
+      return;
+    }
+    while (!recordFinished && (field == UNBOUNDED || fields <= field)) {
+      long start = position;
+      boolean quoted = scanField(fields == columns - 1, quotes);
+      addField(quoted ? start + 1 : start, fieldEnd, quoted);
+    }
+  }
+
+  /**
+   * Finds the end of the current record, boundaries of its not yet
+   *  found fields are not kept
+   */
+  void skip(final int columns, final boolean quotes) {
+    for (int field = fields; !recordFinished; field++) {
+      scanField(field == columns - 1, quotes);
+    }
+  }
+
+  /**
+   * Moves the position after the field, which starts at the position,
+   *  its end is kept in fieldEnd
+   * @param last the field is finished only by the line separator
+   * @return true if the field is quoted
+   */
+  private boolean scanField(final boolean last, final boolean quotes) {
+    long start = position;
+    boolean quoted = quotes && storage.unitAt(position) == quote;
+    if (quoted) {
+      position++;
+    }
+    int token = scan(mask(last, quoted));
+    long end = position - tokenLengths[token];
+    if (token == END_OF_INPUT
+      && quoted
+      && end > start + 1
+      && storage.unitAt(end - 1) == quote) {
+      end--;
+    }
+    fieldEnd = end;
+    if (token == END_OF_INPUT) {
+      lastRecord = true;
+      recordFinished = true;
+    } else if ((token & LINE_SEPARATORS) != 0) {
+      lastRecord = false;
+      recordFinished = true;
+    }
+    return quoted;
+  }
+
+  /**
+   * Tokenizes the whole record by the learned pattern in a single pass
+   *  over its chunk, with constant token masks of columns.
+   *  Falls back to the generic path, restoring the record start,
+   *  if the record does not fit the chunk or does not match the pattern:
+   *  a column is quoted differently or the record is too short
+   * @return false if the record is not tokenized
+   */
+  private boolean tokenizeLearned() {
+    int index = storage.chunkIndex(position);
+    if (index >= storage.storage.size()) {
+      return false;
+    }
+    final BufferInfo bufferInfo = storage.storage.get(index);
+    final long chunkStart = bufferInfo.start;
+    final int actualSize = bufferInfo.actualSize;
+    final int columns = learnedMasks.length;
+    int i = (int) (position - chunkStart);
+    for (int column = 0; column < columns; column++) {
+      if (i >= actualSize) {
+        return fallback();
+      }
+      boolean quoted = learnedQuoted[column];
+      if ((unitAt(bufferInfo, i) == quote) != quoted) {
+        return fallback();
+      }
+      int start = quoted ? ++i : i;
+      int token = scanChunk(bufferInfo, i, 0, learnedMasks[column]);
+      if (token == 0
+        || column < columns - 1 && (token & LINE_SEPARATORS) != 0) {
+        return fallback();
+      }
+      i = scanIndex;
+      addField(chunkStart + start, chunkStart + i - tokenLengths[priority(token)], quoted);
+    }
+    position = chunkStart + i;
+    lastRecord = false;
+    recordFinished = true;
+    return true;
+  }
+
+  private boolean fallback() {
+    position = recordStart;
+    fields = 0;
+    return false;
+  }
+
+  /**
+   * @return true if a not quoted field of the current record contains a quote,
+   *  as a record, tokenized from a line start inside a quoted value, usually does
+   */
+  boolean quoteInPlainField() {
+    for (int field = 0; field < fields; field++) {
+      if (!fieldQuoted[field]) {
+        for (long i = fieldStarts[field]; i < fieldEnds[field]; i++) {
+          if (storage.unitAt(i) == quote) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  String value(final int field) {
+    return storage.value(fieldStarts[field], fieldEnds[field]);
+  }
+
+  FieldSlice slice(final int field, final FieldSlice target) {
+    return storage.slice(fieldStarts[field], fieldEnds[field], target);
+  }
+
+  /**
+   * @return the current record as it is in input, used for error messages
+   */
+  String record() {
+    return storage.value(recordStart, position);
+  }
+
+  /**
+   * Moves the position after the first token of the mask
+   * @return found token type or END_OF_INPUT
+   */
+  private int scan(final int mask) {
+    int state = 0;
+    while (true) {
+      int index = storage.chunkIndex(position);
+      BufferInfo bufferInfo = index < storage.storage.size()
+        ? storage.storage.get(index)
+        : null;
+      if (bufferInfo == null
+        || position - bufferInfo.start >= bufferInfo.actualSize) {
+        if (!storage.read()) {
+          return END_OF_INPUT;
+        }
+        continue;
+      }
+      int token = scanChunk(
+        bufferInfo, (int) (position - bufferInfo.start), state, mask);
+      state = scanState;
+      position = bufferInfo.start + scanIndex;
+      if (token != 0) {
+        return priority(token);
+      }
+    }
+  }
+
+  /**
+   * Runs the automaton over the chunk from the index till a token of the mask,
+   *  or till the end of the chunk
+   * @return found token or 0, the next index is kept in scanIndex,
+   *  the automaton state in scanState
+   */
+  private int scanChunk(
+    final BufferInfo bufferInfo,
+    final int from,
+    final int initialState,
+    final int mask) {
+    final int actualSize = bufferInfo.actualSize;
+    int state = initialState;
+    int i = from;
+    int token = 0;
+    if (bufferInfo.buffer != null) {
+      final char[] buffer = bufferInfo.buffer;
+      for (; i < actualSize && token == 0; i++) {
+        state = transitions[state * classes + classOf(buffer[i])];
+        token = outputs[state] & mask;
+      }
+    } else if (bufferInfo.bytes.hasArray()) {
+      final byte[] buffer = bufferInfo.bytes.array();
+      final int offset = bufferInfo.bytes.arrayOffset();
+      for (; i < actualSize && token == 0; i++) {
+        state = transitions[state * classes + latin1Classes[buffer[offset + i] & 0xFF]];
+        token = outputs[state] & mask;
+      }
+    } else {
+      final ByteBuffer buffer = bufferInfo.bytes;
+      for (; i < actualSize && token == 0; i++) {
+        state = transitions[state * classes + latin1Classes[buffer.get(i) & 0xFF]];
+        token = outputs[state] & mask;
+      }
+    }
+    scanState = state;
+    scanIndex = i;
+    inspected += i - from;
+    return token;
+  }
+
+  //a line separator wins, if the column separator is its suffix
+  private static int priority(final int token) {
+    return (token & LINE_SEPARATORS) != 0
+      ? token & LINE_SEPARATORS
+      : token;
+  }
+
+  private static int mask(final boolean last, final boolean quoted) {
+    return quoted
+      ? (last ? QUOTED_LINE_SEPARATOR : QUOTED_COLUMN_SEPARATOR | QUOTED_LINE_SEPARATOR)
+      : (last ? LINE_SEPARATOR : COLUMN_SEPARATOR | LINE_SEPARATOR);
+  }
+
+  private int unitAt(final BufferInfo bufferInfo, final int i) {
+    return bufferInfo.buffer != null
+      ? bufferInfo.buffer[i]
+      : bufferInfo.bytes.get(i) & 0xFF;
+  }
+
+  private int classOf(final int c) {
+    if (c < latin1Classes.length) {
+      return latin1Classes[c];
+    }
+    for (int i = 0; i < otherSymbols.length; i++) {
+      if (otherSymbols[i] == c) {
+        return otherClasses[i];
+      }
+    }
+    return 0;
+  }
+
+  private void addField(final long start, final long end, final boolean quoted) {
+    if (fields == fieldStarts.length) {
+      fieldStarts = Arrays.copyOf(fieldStarts, fields << 1);
+      fieldEnds = Arrays.copyOf(fieldEnds, fields << 1);
+      fieldQuoted = Arrays.copyOf(fieldQuoted, fields << 1);
+    }
+    fieldStarts[fields] = start;
+    fieldEnds[fields] = end;
+    fieldQuoted[fields] = quoted;
+    fields++;
+  }
+}
@@ -0,0 +1,251 @@
+package com.savdev.commons.file;
+
+/**
+ * Parses numbers and dates directly from field chars, no String is created.
+ *  Used only by CsvRow.
+ */
+final class FieldDecoder {
+
+  //powers of 10, exactly representable as double:
+  private static final double[] POWERS_OF_10 = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+    1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+    1e21, 1e22};
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+  private static final long DAYS_0000_TO_1970 = 719528;
+
+  private FieldDecoder() {
+  }
+
+  static long parseLong(final CharSequence value) {
+    int length = value.length();
+    if (length == 0) {
+      throw numberFormat(value);
+    }
+    int i = 0;
+    boolean negative = false;
+    char first = value.charAt(0);
+    if (first == '-' || first == '+') {
+      negative = first == '-';
+      if (++i == length) {
+        throw numberFormat(value);
+      }
+    }
+    //accumulated negative, so Long.MIN_VALUE does not overflow:
+    long result = 0;
+    long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+    long multiplyLimit = limit / 10;
+    for (; i < length; i++) {
+      int digit = value.charAt(i) - '0';
+      if (digit < 0 || digit > 9 || result < multiplyLimit) {
+        throw numberFormat(value);
+      }
+      result *= 10;
+      if (result < limit + digit) {
+        throw numberFormat(value);
+      }
+      result -= digit;
+    }
+    return negative ? result : -result;
+  }
+
+  static int parseInt(final CharSequence value) {
+    long result = parseLong(value);
+    if (result != (int) result) {
+      throw numberFormat(value);
+    }
+    return (int) result;
+  }
+
+  /**
+   * Values with up to 15 significant digits and a small exponent
+   *  are calculated exactly by one multiplication or division,
+   *  others are parsed by Double.parseDouble()
+   */
+  static double parseDouble(final CharSequence value) {
+    int length = value.length();
+    int i = 0;
+    boolean negative = false;
+    if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+      negative = value.charAt(0) == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int exponent = 0;
+    int digits = 0;
+    boolean point = false;
+    for (; i < length; i++) {
+      char c = value.charAt(i);
+      if (c >= '0' && c <= '9') {
+        if (mantissa >= MAX_EXACT_MANTISSA / 10) {
+          return Double.parseDouble(value.toString());
+        }
+        mantissa = mantissa * 10 + (c - '0');
+        digits++;
+        if (point) {
+          exponent--;
+        }
+      } else if (c == '.' && !point) {
+        point = true;
+      } else {
+        break;
+      }
+    }
+    if (i < length) {
+      char c = value.charAt(i);
+      if (digits == 0 || c != 'e' && c != 'E') {
+        return Double.parseDouble(value.toString());
+      }
+      int exponentStart = i + 1;
+      if (exponentStart == length || length - exponentStart > 4) {
+        return Double.parseDouble(value.toString());
+      }
+      try {
+        exponent += parseInt(value.subSequence(exponentStart, length));
+      } catch (NumberFormatException e) {
+        throw numberFormat(value);
+      }
+    } else if (digits == 0) {
+      throw numberFormat(value);
+    }
+    if (exponent < -22 || exponent > 22) {
+      return Double.parseDouble(value.toString());
+    }
+    double result = exponent < 0
+      ? mantissa / POWERS_OF_10[-exponent]
+      : mantissa * POWERS_OF_10[exponent];
+    return negative ? -result : result;
+  }
+
+  /**
+   * @return unscaled value, for instance 1234 for "12.34" with the scale 2
+   * @throws ArithmeticException if the value has more not zero fraction digits
+   *  than the scale or does not fit into long
+   */
+  static long parseDecimal(final CharSequence value, final int scale) {
+    int length = value.length();
+    int i = 0;
+    boolean negative = false;
+    if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+      negative = value.charAt(0) == '-';
+      i++;
+    }
+    long result = 0;
+    int digits = 0;
+    int fraction = -1; //number of fraction digits, -1 before the point
+    for (; i < length; i++) {
+      char c = value.charAt(i);
+      if (c == '.' && fraction == -1) {
+        fraction = 0;
+        continue;
+      }
+      if (c < '0' || c > '9') {
+        throw numberFormat(value);
+      }
+      digits++;
+      if (fraction >= scale) {
+        if (c != '0') {
+          throw new ArithmeticException(
+            String.format("Value = '%s' has more fraction digits than scale = '%d'",
+              value, scale));
+        }
+        continue;
+      }
+      if (fraction != -1) {
+        fraction++;
+      }
+      result = Math.addExact(Math.multiplyExact(result, 10), c - '0');
+    }
+    if (digits == 0) {
+      throw numberFormat(value);
+    }
+    for (int f = Math.max(fraction, 0); f < scale; f++) {
+      result = Math.multiplyExact(result, 10);
+    }
+    return negative ? -result : result;
+  }
+
+  /**
+   * Every 'y', 'M' and 'd' of the pattern is a digit of year, month or day,
+   *  other pattern chars must be the same in the value,
+   *  for instance "yyyy-MM-dd" or "dd.MM.yyyy"
+   * @return days since 1970-01-01
+   */
+  static long parseEpochDay(final CharSequence value, final String pattern) {
+    if (value.length() != pattern.length()) {
+      throw dateFormat(value, pattern);
+    }
+    int year = 0;
+    int month = 0;
+    int day = 0;
+    for (int i = 0; i < pattern.length(); i++) {
+      char p = pattern.charAt(i);
+      char c = value.charAt(i);
+      if (p == 'y' || p == 'M' || p == 'd') {
+        int digit = c - '0';
+        if (digit < 0 || digit > 9) {
+          throw dateFormat(value, pattern);
+        }
+        if (p == 'y') {
+          year = year * 10 + digit;
+        } else if (p == 'M') {
+          month = month * 10 + digit;
+        } else {
+          day = day * 10 + digit;
+        }
+      } else if (p != c) {
+        throw dateFormat(value, pattern);
+      }
+    }
+    if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+      throw dateFormat(value, pattern);
+    }
+    return epochDay(year, month, day);
+  }
+
+  //the same calculation as LocalDate.toEpochDay()
+  private static long epochDay(final long year, final long month, final int day) {
+    long total = 365 * year;
+    total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+    total += (367 * month - 362) / 12;
+    total += day - 1;
+    if (month > 2) {
+      total--;
+      if (!leap(year)) {
+        total--;
+      }
+    }
+    return total - DAYS_0000_TO_1970;
+  }
+
+  private static boolean leap(final long year) {
+    return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+  }
+
+  private static int lengthOfMonth(final int year, final int month) {
+    switch (month) {
+      case 2:
+        return leap(year) ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  private static NumberFormatException numberFormat(final CharSequence value) {
+    return new NumberFormatException(
+      String.format("Value = '%s' is not a number", value));
+  }
+
+  private static IllegalArgumentException dateFormat(
+    final CharSequence value,
+    final String pattern) {
+    return new IllegalArgumentException(
+      String.format("Value = '%s' does not match date pattern = '%s'",
+        value, pattern));
+  }
+}
@@ -0,0 +1,135 @@
+package com.savdev.commons.file;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A field value as a window over a chunk of Storage, no String is created.
+ *  In bytes mode a window is kept only for bytes, which are chars themselves
+ *  (single byte encodings or ASCII values of UTF-8),
+ *  other values, as well as values split between chunks,
+ *  are copied into the own buffer of the slice.
+ *  A slice is valid until the reader moves to the next record,
+ *  toString() returns an owned copy.
+ */
+class FieldSlice implements CharSequence {
+
+  private static final char[] EMPTY = new char[0];
+
+  //either chars or bytes window:
+  char[] chars = EMPTY;
+  ByteBuffer bytes;
+  int offset;
+  int length;
+  private char[] own = EMPTY; //reused for copied values
+
+  FieldSlice wrap(final char[] chars, final int offset, final int length) {
+    this.chars = chars;
+    this.bytes = null;
+    this.offset = offset;
+    this.length = length;
+    return this;
+  }
+
+  FieldSlice wrap(final ByteBuffer bytes, final int offset, final int length) {
+    this.chars = null;
+    this.bytes = bytes;
+    this.offset = offset;
+    this.length = length;
+    return this;
+  }
+
+  /**
+   * @return the own buffer of at least required length, for a copied value
+   */
+  char[] own(final int length) {
+    if (own.length < length) {
+      own = new char[Math.max(length, own.length << 1)];
+    }
+    return own;
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(final int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException(
+        String.format("Index = '%d', slice length = '%d'", index, length));
+    }
+    return chars != null
+      ? chars[offset + index]
+      : (char) (bytes.get(offset + index) & 0xFF);
+  }
+
+  /**
+   * Copies the value, same as String.getChars() of the whole value
+   */
+  void getChars(final char[] target, final int targetOffset) {
+    if (chars != null) {
+      System.arraycopy(chars, offset, target, targetOffset, length);
+      return;
+    }
+    for (int i = 0; i < length; i++) {
+      target[targetOffset + i] = (char) (bytes.get(offset + i) & 0xFF);
+    }
+  }
+
+  /**
+   * @return a slice over the same window
+   */
+  @Override
+  public CharSequence subSequence(final int start, final int end) {
+    if (start < 0 || end > length || start > end) {
+      throw new IndexOutOfBoundsException(
+        String.format("Sub sequence = [%d, %d), slice length = '%d'",
+          start, end, length));
+    }
+    FieldSlice result = new FieldSlice();
+    return chars != null
+      ? result.wrap(chars, offset + start, end - start)
+      : result.wrap(bytes, offset + start, end - start);
+  }
+
+  /**
+   * Same as String.hashCode() of the value
+   */
+  @Override
+  public int hashCode() {
+    int result = 0;
+    for (int i = 0; i < length; i++) {
+      result = 31 * result + charAt(i);
+    }
+    return result;
+  }
+
+  /**
+   * Compares the value with another slice,
+   *  String.contentEquals(slice) compares it with a String
+   */
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) return true;
+    if (!(o instanceof FieldSlice)) return false;
+    FieldSlice that = (FieldSlice) o;
+    if (length != that.length) return false;
+    for (int i = 0; i < length; i++) {
+      if (charAt(i) != that.charAt(i)) return false;
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    if (chars != null) {
+      return new String(chars, offset, length);
+    }
+    char[] result = new char[length];
+    for (int i = 0; i < length; i++) {
+      result[i] = (char) (bytes.get(offset + i) & 0xFF);
+    }
+    return new String(result);
+  }
+}
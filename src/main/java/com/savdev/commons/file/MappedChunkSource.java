@@ -0,0 +1,75 @@
+package com.savdev.commons.file;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Maps a file window by window, every window is a chunk itself,
+ *  so bytes are never copied into chunk arrays.
+ *  A window cannot exceed 2GB, bigger files are mapped by several windows.
+ *  The channel is closed as soon as the last window is mapped,
+ *  mapped windows stay valid after it.
+ */
+class MappedChunkSource implements ChunkSource {
+
+  final FileChannel channel;
+  final long size;
+  final long offset;
+  final ChunkBufferPool pool; //null - arrays are not pooled
+  long position;
+
+  MappedChunkSource(final Path path) throws IOException {
+    this(path, 0);
+  }
+
+  MappedChunkSource(final Path path, final long offset) throws IOException {
+    this(path, offset, null);
+  }
+
+  /**
+   * @param offset the 1st mapped byte of the file
+   * @param pool receives arrays of chunks, replaced by windows
+   */
+  MappedChunkSource(
+    final Path path,
+    final long offset,
+    final ChunkBufferPool pool) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    this.size = channel.size();
+    this.offset = offset;
+    this.pool = pool;
+    this.position = offset;
+  }
+
+  @Override
+  public int read(BufferInfo chunk, int offset, int length) throws IOException {
+    if (position >= size) {
+      close();
+      return -1;
+    }
+    if (offset != 0) {
+      throw new IllegalStateException(
+        "A mapped window cannot be appended to another chunk");
+    }
+    if (pool != null && chunk.bytes != null && chunk.bytes.hasArray()) {
+      //the chunk slot keeps a pooled array of a previous input
+      pool.release(chunk.bytes.array());
+    }
+    int windowSize = (int) Math.min(length, size - position);
+    chunk.bytes(channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize));
+    position += windowSize;
+    return windowSize;
+  }
+
+  @Override
+  public long offset() {
+    return offset;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
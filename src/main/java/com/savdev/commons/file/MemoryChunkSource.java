@@ -0,0 +1,84 @@
+package com.savdev.commons.file;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Input, which is already in memory, is given to chunks without copying.
+ *  Chars are a single chunk over the whole array, offsets are array indexes,
+ *  bytes are sliced by windows of buffer size, as MappedChunkSource does.
+ */
+class MemoryChunkSource implements ChunkSource {
+
+  final char[] chars;
+  final ByteBuffer bytes;
+  final int start; //the 1st char or byte of input
+  final int limit;
+  int position;
+
+  /**
+   * @param chars input from the offset till offset + length
+   */
+  MemoryChunkSource(final char[] chars, final int offset, final int length) {
+    this.chars = chars;
+    this.bytes = null;
+    this.start = offset;
+    this.position = offset;
+    this.limit = offset + length;
+  }
+
+  MemoryChunkSource(final ByteBuffer bytes) {
+    this(bytes, 0);
+  }
+
+  /**
+   * @param bytes input from its position till its limit
+   * @param offset the 1st byte to read, relative to the buffer position
+   */
+  MemoryChunkSource(final ByteBuffer bytes, final int offset) {
+    this.chars = null;
+    this.bytes = bytes.slice();
+    this.start = offset;
+    this.position = offset;
+    this.limit = this.bytes.limit();
+  }
+
+  @Override
+  public int read(BufferInfo chunk, int offset, int length) {
+    if (position >= limit) {
+      return -1;
+    }
+    if (offset != 0) {
+      throw new IllegalStateException(
+        "An in-memory window cannot be appended to another chunk");
+    }
+    if (chars != null) {
+      if (length < limit) {
+        throw new IllegalStateException(
+          String.format("In-memory chars = '%d' exceed the buffer size = '%d'",
+            limit, length));
+      }
+      //the chunk starts at the 1st char of the array, chars before the offset are skipped
+      chunk.buffer(chars);
+      chunk.start(0);
+      position = limit;
+      return limit;
+    }
+    int windowSize = Math.min(length, limit - position);
+    ByteBuffer window = bytes.duplicate();
+    window.position(position);
+    window.limit(position + windowSize);
+    chunk.bytes(window.slice());
+    position += windowSize;
+    return windowSize;
+  }
+
+  @Override
+  public long offset() {
+    return start;
+  }
+
+  @Override
+  public void close() {
+    //nothing to release
+  }
+}
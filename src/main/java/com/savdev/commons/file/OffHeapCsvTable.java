@@ -0,0 +1,452 @@
+package com.savdev.commons.file;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import javax.validation.constraints.NotNull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Parsed rows, kept outside of the heap, to buffer huge datasets
+ *  without garbage collection pauses. A row is appended into direct
+ *  byte buffer arenas (or into regions of a memory mapped temp file)
+ *  as an offset table of its fields, followed by their UTF-8 bytes,
+ *  addresses of rows are kept in arenas too.
+ *  Rows are returned as lightweight views, decoded on access.
+ *  The memory is freed by close(), by Unsafe.invokeCleaner() since java 9
+ *  and by the cleaner of the buffer on java 8; if neither is accessible,
+ *  it is freed by the garbage collector, when the table is not referenced.
+ *  Not thread safe.
+ */
+public class OffHeapCsvTable implements Closeable {
+
+  private static final Object UNSAFE;
+  private static final Method INVOKE_CLEANER;
+  //java 8: ((sun.nio.ch.DirectBuffer) buffer).cleaner().clean()
+  private static final Method CLEANER;
+  private static final Method CLEAN;
+
+  static {
+    Object unsafe = null;
+    Method invokeCleaner = null;
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      unsafe = field.get(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      //before java 9, the cleaner of the buffer is used
+      invokeCleaner = null;
+    }
+    UNSAFE = unsafe;
+    INVOKE_CLEANER = invokeCleaner;
+    Method cleaner = null;
+    Method clean = null;
+    if (invokeCleaner == null) {
+      try {
+        cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+        clean = cleaner.getReturnType().getMethod("clean");
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        //buffers are freed by the garbage collector
+        cleaner = null;
+      }
+    }
+    CLEANER = cleaner;
+    CLEAN = clean;
+  }
+
+  final int arenaSize;
+  final long maxSize;
+  final FileChannel channel; //null - direct buffers
+  List<ByteBuffer> arenas = Lists.newArrayList();
+  List<ByteBuffer> addresses = Lists.newArrayList();
+  //UTF-8 bytes of a decoded field, reused by rows
+  byte[] decoded = new byte[64];
+  long allocated = 0;
+  long rows = 0;
+  String[] columnNames;
+  Map<String, Integer> columnIndexes;
+  //the row being appended:
+  byte[] payload = new byte[256];
+  int[] ends;
+  int length;
+
+  private OffHeapCsvTable(final int arenaSize, final long maxSize, final FileChannel channel) {
+    this.arenaSize = arenaSize;
+    this.maxSize = maxSize;
+    this.channel = channel;
+  }
+
+  public static OffHeapCsvTableBuilder builder() {
+    return new OffHeapCsvTableBuilder();
+  }
+
+  public static class OffHeapCsvTableBuilder {
+
+    private int arenaSize = 16 * 1024 * 1024;
+    private long maxSize = Long.MAX_VALUE;
+    private Path tempDirectory;
+
+    /**
+     * @param arenaSize bytes of every arena, a row cannot be longer
+     */
+    public OffHeapCsvTableBuilder arenaSize(final int arenaSize) {
+      if (arenaSize < 8) {
+        throw new IllegalArgumentException(
+          String.format("Arena size = '%d' must be at least 8 bytes", arenaSize));
+      }
+      this.arenaSize = arenaSize;
+      return this;
+    }
+
+    /**
+     * @param maxSize max bytes of all arenas, an append beyond it fails
+     */
+    public OffHeapCsvTableBuilder maxSize(final long maxSize) {
+      if (maxSize <= 0) {
+        throw new IllegalArgumentException(
+          String.format("Max size = '%d' must be positive", maxSize));
+      }
+      this.maxSize = maxSize;
+      return this;
+    }
+
+    /**
+     * Arenas are mapped regions of a temp file in the directory,
+     *  the file is deleted by close()
+     */
+    public OffHeapCsvTableBuilder tempDirectory(@NotNull final Path tempDirectory) {
+      if (tempDirectory == null || !Files.isDirectory(tempDirectory)) {
+        throw new IllegalArgumentException(
+          String.format("Temp directory = '%s' does not exist", tempDirectory));
+      }
+      this.tempDirectory = tempDirectory;
+      return this;
+    }
+
+    public OffHeapCsvTable build() {
+      FileChannel channel = null;
+      if (tempDirectory != null) {
+        try {
+          channel = FileChannel.open(
+            Files.createTempFile(tempDirectory, "csv-table", ".arena"),
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+      return new OffHeapCsvTable(arenaSize, maxSize, channel);
+    }
+  }
+
+  /**
+   * Appends all records of the reader, their columns must be the same
+   *  as columns of already appended records
+   * @return number of appended records
+   */
+  public long append(@NotNull final CsvReader reader) {
+    if (reader == null) {
+      throw new IllegalArgumentException("Cannot append records, reader cannot be null");
+    }
+    checkOpen();
+    return reader.parse(new CsvHandler() {
+      @Override
+      public void header(final String[] header) {
+        columns(header);
+      }
+
+      @Override
+      public void startRecord() {
+        length = 0;
+      }
+
+      @Override
+      public void field(final int field, final CharSequence value) {
+        encode(value);
+        ends[field] = length;
+      }
+
+      @Override
+      public boolean endRecord() {
+        appendRecord();
+        return true;
+      }
+    });
+  }
+
+  /**
+   * @return number of rows
+   */
+  public long rows() {
+    return rows;
+  }
+
+  /**
+   * @return bytes of all arenas
+   */
+  public long allocated() {
+    return allocated;
+  }
+
+  public int columns() {
+    return columnNames != null ? columnNames.length : 0;
+  }
+
+  public String columnName(final int columnIndex) {
+    checkColumn(columnIndex);
+    return columnNames[columnIndex];
+  }
+
+  /**
+   * @return index of the column, or -1 if there is no such column
+   */
+  public int columnIndex(final String columnName) {
+    Integer result = columnIndexes != null ? columnIndexes.get(columnName) : null;
+    return result != null ? result : -1;
+  }
+
+  /**
+   * @return a view of the row, it is valid until the table is closed
+   */
+  public Row row(final long index) {
+    checkOpen();
+    if (index < 0 || index >= rows) {
+      throw new IllegalArgumentException(
+        String.format("Row = '%d' is out of the table, rows = '%d'", index, rows));
+    }
+    int perArena = arenaSize >> 3;
+    return new Row(index,
+      addresses.get((int) (index / perArena)).getLong((int) (index % perArena) << 3));
+  }
+
+  /**
+   * @return views of all rows in the order they were appended
+   */
+  public Stream<Row> stream() {
+    checkOpen();
+    return LongStream.range(0, rows).mapToObj(this::row);
+  }
+
+  /**
+   * Frees all arenas, views cannot be used after it
+   */
+  @Override
+  public void close() {
+    if (arenas == null) {
+      return;
+    }
+    for (ByteBuffer arena : arenas) {
+      free(arena);
+    }
+    for (ByteBuffer arena : addresses) {
+      free(arena);
+    }
+    arenas = null;
+    addresses = null;
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  private void columns(final String[] header) {
+    if (columnNames == null) {
+      columnNames = header;
+      columnIndexes = Maps.newHashMapWithExpectedSize(header.length);
+      for (int i = 0; i < header.length; i++) {
+        columnIndexes.put(header[i], i);
+      }
+      ends = new int[header.length];
+    } else if (!Arrays.equals(columnNames, header)) {
+      throw new IllegalArgumentException(
+        String.format("Columns = '%s' differ from columns of the table = '%s'",
+          Arrays.toString(header), Arrays.toString(columnNames)));
+    }
+  }
+
+  /**
+   * Appends UTF-8 bytes of the value to the payload
+   */
+  private void encode(final CharSequence value) {
+    if (payload.length - length < value.length() * 3) {
+      payload = Arrays.copyOf(payload,
+        Math.max(payload.length << 1, length + value.length() * 3));
+    }
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        payload[length++] = (byte) c;
+      } else if (c < 0x800) {
+        payload[length++] = (byte) (0xC0 | c >> 6);
+        payload[length++] = (byte) (0x80 | c & 0x3F);
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+        && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        payload[length++] = (byte) (0xF0 | codePoint >> 18);
+        payload[length++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+        payload[length++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+        payload[length++] = (byte) (0x80 | codePoint & 0x3F);
+      } else if (Character.isSurrogate(c)) {
+        payload[length++] = '?';
+      } else {
+        payload[length++] = (byte) (0xE0 | c >> 12);
+        payload[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+        payload[length++] = (byte) (0x80 | c & 0x3F);
+      }
+    }
+  }
+
+  /**
+   * Copies the offset table and the payload of the row into the last arena,
+   *  its address into the last address arena
+   */
+  private void appendRecord() {
+    int size = (ends.length << 2) + length;
+    if (size > arenaSize) {
+      throw new IllegalStateException(
+        String.format("Row = '%d' of '%d' bytes exceeds the arena size = '%d'",
+          rows, size, arenaSize));
+    }
+    ByteBuffer arena = arenas.isEmpty() ? null : arenas.get(arenas.size() - 1);
+    if (arena == null || arena.remaining() < size) {
+      arena = allocate();
+      arenas.add(arena);
+    }
+    long address = (long) (arenas.size() - 1) << 32 | arena.position();
+    for (int end : ends) {
+      arena.putInt(end);
+    }
+    arena.put(payload, 0, length);
+    ByteBuffer rowAddresses = addresses.isEmpty() ? null : addresses.get(addresses.size() - 1);
+    if (rowAddresses == null || rowAddresses.remaining() < 8) {
+      rowAddresses = allocate();
+      addresses.add(rowAddresses);
+    }
+    rowAddresses.putLong(address);
+    rows++;
+  }
+
+  private ByteBuffer allocate() {
+    if (allocated + arenaSize > maxSize) {
+      throw new IllegalStateException(
+        String.format("Cannot append row = '%d', allocated = '%d' bytes " +
+          "would exceed max size = '%d'", rows, allocated + arenaSize, maxSize));
+    }
+    ByteBuffer result;
+    if (channel == null) {
+      result = ByteBuffer.allocateDirect(arenaSize);
+    } else {
+      try {
+        result = channel.map(FileChannel.MapMode.READ_WRITE, allocated, arenaSize);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    allocated += arenaSize;
+    return result;
+  }
+
+  private static void free(final ByteBuffer arena) {
+    try {
+      if (INVOKE_CLEANER != null) {
+        INVOKE_CLEANER.invoke(UNSAFE, arena);
+      } else if (CLEANER != null) {
+        Object cleaner = CLEANER.invoke(arena);
+        if (cleaner != null) {
+          CLEAN.invoke(cleaner);
+        }
+      }
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      //left to the garbage collector
+    }
+  }
+
+  private void checkOpen() {
+    if (arenas == null) {
+      throw new IllegalStateException("The table is closed");
+    }
+  }
+
+  private void checkColumn(final int columnIndex) {
+    if (columnIndex < 0 || columnIndex >= columns()) {
+      throw new IllegalArgumentException(
+        String.format("Column index = '%d' is out of the header range, columns = '%d'",
+          columnIndex, columns()));
+    }
+  }
+
+  /**
+   * A row of the table, fields are decoded on every access
+   */
+  public class Row {
+    final long index;
+    //arena index in high 32 bits, the offset in the arena in low ones
+    final long address;
+
+    Row(final long index, final long address) {
+      this.index = index;
+      this.address = address;
+    }
+
+    public long index() {
+      return index;
+    }
+
+    public String get(final int columnIndex) {
+      checkOpen();
+      checkColumn(columnIndex);
+      ByteBuffer arena = arenas.get((int) (address >>> 32));
+      int offset = (int) address;
+      int start = columnIndex == 0 ? 0 : arena.getInt(offset + (columnIndex - 1 << 2));
+      int end = arena.getInt(offset + (columnIndex << 2));
+      int from = offset + (columnNames.length << 2) + start;
+      int length = end - start;
+      if (decoded.length < length) {
+        decoded = new byte[Math.max(length, decoded.length << 1)];
+      }
+      //the position is the append offset of the arena, it is restored
+      int position = arena.position();
+      arena.position(from);
+      arena.get(decoded, 0, length);
+      arena.position(position);
+      return new String(decoded, 0, length, StandardCharsets.UTF_8);
+    }
+
+    public String get(final String columnName) {
+      int columnIndex = columnIndex(columnName);
+      if (columnIndex == -1) {
+        throw new IllegalArgumentException(
+          String.format("Column = '%s' is not found in the header", columnName));
+      }
+      return get(columnIndex);
+    }
+
+    public Map<String, String> toMap() {
+      Map<String, String> result = Maps.newHashMapWithExpectedSize(columnNames.length);
+      for (int i = 0; i < columnNames.length; i++) {
+        result.put(columnNames[i], get(i));
+      }
+      return result;
+    }
+  }
+}
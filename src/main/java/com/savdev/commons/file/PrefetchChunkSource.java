@@ -0,0 +1,226 @@
+package com.savdev.commons.file;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads chunks of another source by a background thread,
+ *  while the parser consumes already read ones.
+ *  At most depth chunks are read ahead. A read ahead chunk array is given
+ *  to the Storage chunk instead of copying, the replaced chunk array
+ *  is filled again by the background thread.
+ *  close() stops the thread, even if input is not read till the end.
+ */
+class PrefetchChunkSource implements ChunkSource {
+
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 1000;
+  //marks the end of input in the queue:
+  private static final BufferInfo END = new BufferInfo(null, null, -1);
+
+  final ChunkSource delegate;
+  final int bufferSize;
+  final boolean bytes;
+  final ChunkBufferPool pool; //null - arrays are not pooled
+  final BlockingQueue<BufferInfo> filled;
+  final BlockingQueue<BufferInfo> free;
+  final Thread thread;
+  volatile boolean closed = false;
+  volatile Throwable failure; //thrown by the delegate, rethrown by read()
+
+  boolean ended = false; //the end marker is taken
+  //the read ahead chunk, which is being consumed:
+  BufferInfo current;
+  int currentPosition;
+
+  PrefetchChunkSource(
+    final ChunkSource delegate,
+    final int bufferSize,
+    final boolean bytes,
+    final int depth,
+    final ChunkBufferPool pool) {
+    if (depth <= 0) {
+      throw new IllegalArgumentException(
+        String.format("Prefetch depth = '%d' must be positive", depth));
+    }
+    this.delegate = delegate;
+    this.bufferSize = bufferSize;
+    this.bytes = bytes;
+    this.pool = pool;
+    this.filled = new ArrayBlockingQueue<>(depth + 1);
+    this.free = new ArrayBlockingQueue<>(depth + 1);
+    this.thread = new Thread(this::readAhead, "csv-prefetch");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  @Override
+  public int read(BufferInfo chunk, int offset, int length) throws IOException {
+    if (current == null || currentPosition == current.actualSize) {
+      recycle(current);
+      current = ended ? END : next();
+      currentPosition = 0;
+      if (current == END) {
+        current = null;
+        ended = true;
+        if (failure != null) {
+          throw rethrown();
+        }
+        return -1;
+      }
+    }
+    int available = current.actualSize - currentPosition;
+    if (offset == 0 && currentPosition == 0 && available <= length) {
+      //the whole read ahead chunk is given to the storage chunk
+      char[] buffer = chunk.buffer;
+      ByteBuffer byteBuffer = chunk.bytes;
+      chunk.buffer(current.buffer);
+      chunk.bytes(current.bytes);
+      current.buffer(buffer);
+      current.bytes(byteBuffer);
+      recycle(current);
+      current = null;
+      return available;
+    }
+    int result = Math.min(available, length);
+    if (bytes) {
+      if (chunk.bytes == null) {
+        chunk.bytes(ByteBuffer.wrap(
+          pool != null ? pool.borrowBytes() : new byte[bufferSize]));
+      }
+      System.arraycopy(current.bytes.array(), currentPosition,
+        chunk.bytes.array(), offset, result);
+    } else {
+      if (chunk.buffer == null) {
+        chunk.buffer(pool != null ? pool.borrowChars() : new char[bufferSize]);
+      }
+      System.arraycopy(current.buffer, currentPosition,
+        chunk.buffer, offset, result);
+    }
+    currentPosition += result;
+    return result;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    thread.interrupt();
+    try {
+      delegate.close();
+    } finally {
+      try {
+        thread.join(SHUTDOWN_TIMEOUT_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if (pool != null && !thread.isAlive()) {
+        release(current);
+        filled.forEach(this::release);
+        free.forEach(this::release);
+      }
+      current = null;
+      filled.clear();
+      free.clear();
+    }
+  }
+
+  private void release(final BufferInfo chunk) {
+    if (chunk != null && chunk != END) {
+      pool.release(chunk.buffer);
+      if (chunk.bytes != null) {
+        pool.release(chunk.bytes.array());
+      }
+    }
+  }
+
+  private BufferInfo next() throws IOException {
+    if (closed) {
+      throw new IOException("Input is already closed");
+    }
+    try {
+      return filled.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Waiting for a read ahead chunk is interrupted");
+    }
+  }
+
+  //a chunk without an array is not kept, the thread allocates a new one
+  private void recycle(final BufferInfo chunk) {
+    if (chunk != null && chunk != END
+      && (chunk.buffer != null || chunk.bytes != null)) {
+      free.offer(chunk);
+    }
+  }
+
+  /**
+   * @return an IOException of the delegate, other failures are thrown as they are
+   */
+  private IOException rethrown() {
+    if (failure instanceof IOException) {
+      return (IOException) failure;
+    }
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+    return new IOException(failure);
+  }
+
+  /**
+   * Body of the background thread, the end marker is always put,
+   *  so the parser is not blocked, when the delegate fails
+   */
+  private void readAhead() {
+    try {
+      while (!closed) {
+        BufferInfo chunk = free.poll();
+        if (chunk == null) {
+          chunk = BufferInfo.builder().build();
+        }
+        int size = 0;
+        while (size < bufferSize) {
+          int c = delegate.read(chunk, size, bufferSize - size);
+          if (c == -1) {
+            break;
+          }
+          size += c;
+        }
+        if (size > 0) {
+          chunk.actualSize(size);
+          filled.put(chunk);
+        }
+        if (size < bufferSize) {
+          break;
+        }
+      }
+    } catch (InterruptedException e) {
+      //closed
+    } catch (Throwable e) {
+      if (!closed) {
+        failure = e;
+      }
+    } finally {
+      end();
+    }
+  }
+
+  private void end() {
+    try {
+      //waits for a free place, if the parser stopped reading, close() stops it
+      while (!closed && !filled.offer(END, SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+        //waiting for the parser
+      }
+    } catch (InterruptedException e) {
+      //closed
+    }
+  }
+}
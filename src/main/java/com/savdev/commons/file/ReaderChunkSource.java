@@ -0,0 +1,40 @@
+package com.savdev.commons.file;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads decoded chars into chunk arrays
+ */
+class ReaderChunkSource implements ChunkSource {
+
+  final Reader reader;
+  final int bufferSize;
+  final ChunkBufferPool pool; //null - arrays are not pooled
+
+  ReaderChunkSource(final Reader reader, final int bufferSize) {
+    this(reader, bufferSize, null);
+  }
+
+  ReaderChunkSource(
+    final Reader reader,
+    final int bufferSize,
+    final ChunkBufferPool pool) {
+    this.reader = reader;
+    this.bufferSize = bufferSize;
+    this.pool = pool;
+  }
+
+  @Override
+  public int read(BufferInfo chunk, int offset, int length) throws IOException {
+    if (chunk.buffer == null) {
+      chunk.buffer(pool != null ? pool.borrowChars() : new char[bufferSize]);
+    }
+    return reader.read(chunk.buffer, offset, length);
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+}
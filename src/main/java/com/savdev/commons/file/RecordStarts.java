@@ -0,0 +1,125 @@
+package com.savdev.commons.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Finds record starts of a memory mapped csv file from arbitrary offsets:
+ *  a line start is taken, if records, tokenized from it, look valid,
+ *  so a line separator inside a quoted value is not taken for a record end.
+ *  Used to align splits of CsvSpliterator and ranges of CsvRange to records.
+ */
+class RecordStarts {
+
+  //records, tokenized from a line start to accept it as a record start:
+  static final int RESYNC_RECORDS = 64;
+
+  private RecordStarts() {
+    throw new AssertionError("Utility class cannot be instantiated");
+  }
+
+  /**
+   * Speculates, that a line start is a record start, and accepts it,
+   *  if RESYNC_RECORDS records from it have all columns of the header
+   *  and no quote inside a not quoted value. A line start inside a quoted value
+   *  usually gives a short record or a value with the closing quote,
+   *  the next line start is tried then.
+   *  Every line start is accepted or rejected the same way for any offset,
+   *  so neighbour ranges agree on their common boundary.
+   * @param reader a mapped file reader with a calculated header
+   * @return the 1st accepted record start, not before the offset,
+   *  or the file size, if there is no such record
+   */
+  static long resync(final CsvReader reader, final long offset) {
+    long size = size(reader.path);
+    long candidate = offset;
+    if (candidate < size
+      && !afterLineSeparator(reader.path, candidate,
+        reader.csvLineSeparator.getBytes(reader.encoding))) {
+      candidate = nextLine(reader, candidate);
+    }
+    while (candidate < size && !isRecordStart(reader, candidate)) {
+      candidate = nextLine(reader, candidate);
+    }
+    return Math.min(candidate, size);
+  }
+
+  private static boolean isRecordStart(final CsvReader reader, final long offset) {
+    int columns = reader.csvHeader.size();
+    CsvTokenizer tokenizer = tokenizer(reader, offset);
+    try {
+      for (int i = 0; i < RESYNC_RECORDS && tokenizer.startRecord(); i++) {
+        tokenizer.tokenize(CsvTokenizer.UNBOUNDED, columns, true);
+        if (tokenizer.fields != columns || tokenizer.quoteInPlainField()) {
+          return false;
+        }
+      }
+      return true;
+    } finally {
+      tokenizer.storage.close();
+    }
+  }
+
+  /**
+   * @return the offset after the next line separator, quotes are ignored
+   */
+  private static long nextLine(final CsvReader reader, final long offset) {
+    CsvTokenizer tokenizer = tokenizer(reader, offset);
+    try {
+      if (tokenizer.startRecord()) {
+        tokenizer.skip(1, false);
+      }
+      return tokenizer.position;
+    } finally {
+      tokenizer.storage.close();
+    }
+  }
+
+  private static CsvTokenizer tokenizer(final CsvReader reader, final long offset) {
+    try {
+      return new CsvTokenizer(
+        new Storage(
+          reader.storage.bufferSize,
+          new MappedChunkSource(reader.path, offset),
+          reader.encoding,
+          true),
+        reader.csvColumnSeparator,
+        reader.csvLineSeparator);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return true if the offset follows the line separator,
+   *  a record cannot start at another offset
+   */
+  static boolean afterLineSeparator(final Path path, final long offset, final byte[] separator) {
+    if (offset < separator.length) {
+      return false;
+    }
+    ByteBuffer bytes = ByteBuffer.allocate(separator.length);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      while (bytes.hasRemaining()
+        && channel.read(bytes, offset - separator.length + bytes.position()) != -1) {
+        //reads the whole separator
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return Arrays.equals(separator, bytes.array());
+  }
+
+  static long size(final Path path) {
+    try {
+      return Files.size(path);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -1,290 +1,336 @@
 package com.savdev.commons.file;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.util.LinkedList;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Is not expected to be public available. Used only by CsvReader
+ *  In bytes mode input is not decoded, chunks keep raw bytes,
+ *  only extracted values are decoded.
  */
 class Storage {
 
-  private final static int UNLIMITED = -1;
+  int bufferSize; //changes, when another input is read by reset()
+  ChunkSource source;
+  final Charset encoding;
+  final boolean bytes;
+  //bytes are chars, a String is created without a decoder:
+  final boolean singleByte;
 
-  final int bufferSize;
-  final InputStream input;
-
-  final List<BufferInfo> storage = new LinkedList<>();
-  final BufferedReader reader;
-  Position currentReadPosition = Position.builder().build();
+  final ChunkRing storage;
+  ChunkBufferPool pool; //null - chunk arrays are not pooled
+  int readPosition; //the current read position in the 1st chunk
+  long readTotal; //absolute offset of the next char (or byte) to read
 
   public Storage(
     final int bufferSize,
     final InputStream input,
     final Charset encoding) {
+    this(bufferSize, input, encoding, false);
+  }
+
+  public Storage(
+    final int bufferSize,
+    final InputStream input,
+    final Charset encoding,
+    final boolean bytes) {
+    this(bufferSize,
+      source(bufferSize, input, encoding, bytes, null),
+      encoding,
+      bytes);
+  }
+
+  /**
+   * @param pool null - chunk arrays are not pooled
+   */
+  static ChunkSource source(
+    final int bufferSize,
+    final InputStream input,
+    final Charset encoding,
+    final boolean bytes,
+    final ChunkBufferPool pool) {
+    return bytes
+      ? new StreamChunkSource(input, bufferSize, pool)
+      : new ReaderChunkSource(new InputStreamReader(input, encoding), bufferSize, pool);
+  }
+
+  public Storage(
+    final int bufferSize,
+    final ChunkSource source,
+    final Charset encoding,
+    final boolean bytes) {
     this.bufferSize = bufferSize;
-    this.input = input;
-    reader = new BufferedReader(new InputStreamReader(input, encoding));
+    this.source = source;
+    this.encoding = encoding;
+    this.bytes = bytes;
+    this.singleByte = StandardCharsets.ISO_8859_1.equals(encoding)
+      || StandardCharsets.US_ASCII.equals(encoding);
+    this.storage = new ChunkRing();
+    this.readTotal = source.offset();
+  }
+
+  void reset(final ChunkSource source){
+    reset(source, bufferSize);
   }
 
   /**
-   *
+   * Reads another input, chunks arrays are reused, if the buffer size
+   *  is not changed, the previous source must be already closed
+   */
+  void reset(final ChunkSource source, final int bufferSize){
+    if (this.source instanceof MemoryChunkSource || this.bufferSize != bufferSize){
+      //chunks hold arrays of the in-memory input or of another size,
+      // they must not be filled
+      storage.release(chunk -> {});
+    }
+    this.bufferSize = bufferSize;
+    this.source = source;
+    storage.clear();
+    readPosition = 0;
+    readTotal = source.offset();
+  }
+
+  /**
+   * Chunk arrays are returned to the pool, when the storage is closed
+   */
+  Storage pool(final ChunkBufferPool pool){
+    this.pool = pool;
+    return this;
+  }
+
+  /**
+   * Fills the next chunk completely, only the last chunk can be shorter,
+   *  so the chunk of any absolute offset is found without iterating
    * @return true if input has some data
    */
   boolean read(){
-    BufferInfo buffer = getStoredBuffer();
+    final long offset = readTotal;
+    BufferInfo buffer = storage.add();
+    buffer.start(offset);
     try {
-      int c = reader.read(buffer.buffer, 0, bufferSize);
-      if (c == -1){
-        storage.remove(storage.size()-1);
+      int size = 0;
+      while (size < bufferSize){
+        int c = source.read(buffer, size, bufferSize - size);
+        if (c == -1){
+          break;
+        }
+        size += c;
+      }
+      if (size == 0){
+        storage.removeLast();
         return false;
       }
-      buffer.actualSize(c);
+      buffer.actualSize(size);
+      readTotal = buffer.start + size;
+      if (storage.size() == 1){
+        readPosition = (int) (offset - buffer.start);
+      }
       return true;
     } catch (IOException e) {
       throw new IllegalStateException(e);
     }
   }
 
-  private BufferInfo getStoredBuffer(){
-    if (currentReadPosition.listPosition > 0
-      && !storage.isEmpty()){
-      return storage.get(0);
-    } else {
-      char[] a = new char[bufferSize];
-      BufferInfo b = BufferInfo.builder()
-        .buffer(a)
-        .build();
-      storage.add(b);
-      return b;
+  void close(){
+    try {
+      source.close();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      if (pool != null){
+        storage.release(this::release);
+      }
+    }
+  }
+
+  private void release(final BufferInfo chunk){
+    pool.release(chunk.buffer);
+    if (chunk.bytes != null && chunk.bytes.hasArray()){
+      pool.release(chunk.bytes.array());
     }
   }
 
+
   /**
-   * Returns a value till the end of currently read data
-   *  TODO, probably it is a better to read all data, and return all data
-   * @return
+   * @return absolute offset of the current read position
    */
-  String value(){
-    if (storage.isEmpty()){
-      read();
-    }
-
-    return value(Position.builder()
-      .length(UNLIMITED) //unlimited
-      .listPosition(storage.size() - 1)
-      .arrayPosition(!storage.isEmpty() ?
-        storage.get(storage.size()-1).actualSize : 0)
-      .build());
+  long readOffset(){
+    return storage.isEmpty()
+      ? readTotal
+      : storage.get(0).start + readPosition;
   }
 
-  String value(Position toPosition){
+  /**
+   * @return index of a chunk, containing absolute offset,
+   *  equals to the number of chunks if the offset is not read yet
+   */
+  int chunkIndex(long offset){
     if (storage.isEmpty()){
-      read();
+      return 0;
+    }
+    long start = storage.get(0).start;
+    if (offset < start){
+      throw new IllegalStateException(
+        String.format("Offset = '%d' is already released, current offset = '%d'",
+          offset, start));
     }
-    int totalBufferSize = bufferSize(currentReadPosition, toPosition);
-    char[] totalBuffer = new char[totalBufferSize];
+    return (int) Math.min((offset - start) / bufferSize, storage.size());
+  }
 
-    int currentTargetPosition = 0;
-    for (int i = 0; i <= toPosition.listPosition; i++) {
-      BufferInfo bufferInfo = storage.get(i);
-      if (bufferInfo.isEmpty()){
-        throw new IllegalStateException("Buffer cannot be empty");
+  /**
+   * @return a char (or an unsigned byte in bytes mode) by its absolute offset,
+   *  reads more data if required, -1 if there is no more data
+   */
+  int unitAt(long offset){
+    while (true){
+      int index = chunkIndex(offset);
+      if (index < storage.size()){
+        BufferInfo bufferInfo = storage.get(index);
+        int arrayPosition = (int) (offset - bufferInfo.start);
+        if (arrayPosition < bufferInfo.actualSize){
+          return bytes
+            ? bufferInfo.bytes.get(arrayPosition) & 0xFF
+            : bufferInfo.buffer[arrayPosition];
+        }
       }
-      if (i == 0){ //the 1st buffer
-        int length = lengthFstBuffer(toPosition);
-        System.arraycopy(bufferInfo.buffer, currentReadPosition.arrayPosition,
-          totalBuffer, currentTargetPosition, length);
-        currentTargetPosition += length;
-      } else if (i == toPosition.listPosition) { //the last buffer
-        int length = lengthLstBuffer(toPosition);
-        System.arraycopy(bufferInfo.buffer, 0,
-          totalBuffer, currentTargetPosition, length);
-        currentTargetPosition += length;
-      } else {
-        System.arraycopy(bufferInfo.buffer, 0,
-          totalBuffer, currentTargetPosition, bufferInfo.actualSize);
-        currentTargetPosition += bufferInfo.actualSize;
+      if (!read()){
+        return -1;
       }
     }
-    for (int i = 0; i < toPosition.listPosition; i++){
-      storage.remove(0);
-    }
-
-    if (!storage.isEmpty()
-      && toPosition.arrayPosition == storage.get(0).actualSize){
-      currentReadPosition = Position.builder()
-        .listPosition(0)
-        .arrayPosition(0)
-        .build();
-      storage.get(0).actualSize = 0;
-    } else {
-      currentReadPosition = Position.builder()
-        .listPosition(0)
-        .arrayPosition(toPosition.arrayPosition)
-        .build();
-    }
-    movePositionAfter(toPosition.length, 0);
-    return new String(totalBuffer);
   }
 
   /**
-   * Tries to find a search string in input
-   *  in in the current buffers there is no such information,
-   *  it reads by itself more amound data if exists
-   * @param search
-   * @return
+   * Returns a value between absolute offsets, both must be already read
+   *  does not change the current read position
+   * @param from inclusive
+   * @param to exclusive
    */
-  Position positionOf(String search){
-    Position partlyFoundPosition = null;
-    int foundSymbols = 0;
-    for(int list = currentReadPosition.listPosition; list < storage.size(); list++){
-      for(
-        int searchPos = 0, el = (list == currentReadPosition.listPosition)
-          ? currentReadPosition.arrayPosition : 0;
-        el + searchPos < storage.get(list).actualSize; el++){
-        for (;
-             (el + searchPos < storage.get(list).actualSize)
-               && searchPos < Math.min(search.length(), storage.get(list).actualSize);
-             searchPos++){
-          if (storage.get(list).buffer[el + searchPos] == search.charAt(foundSymbols)){
-            if (partlyFoundPosition == null){
-              partlyFoundPosition = Position.builder()
-                .isFound(true)
-                .length(search.length())
-                .listPosition(list)
-                .arrayPosition(el)
-                .build();
-
-            }
-            foundSymbols++;
-            if (foundSymbols == search.length()){
-              return partlyFoundPosition;
-            }
-          } else {
-            partlyFoundPosition = null;
-            foundSymbols = 0;
-            searchPos = 0;
-            break;
-          }
-        }
-      }
+  String value(long from, long to){
+    if (from == to){
+      return "";
     }
-    //we could not find it, try to read more data
-    if (storage.isEmpty()){
-      read();
-      return positionOf(search);
-    } else if (read()) {
-      return positionOf(search);
-    } else {
-      return Position.builder().isFound(false).build();
+    if (bytes){
+      return bytesValue(from, to);
     }
-
+    int fromIndex = chunkIndex(from);
+    BufferInfo fst = storage.get(fromIndex);
+    int fromPosition = (int) (from - fst.start);
+    if (to - fst.start <= fst.actualSize){
+      return new String(fst.buffer, fromPosition, (int) (to - from));
+    }
+    char[] totalBuffer = new char[(int) (to - from)];
+    int currentTargetPosition = 0;
+    for (int i = fromIndex; currentTargetPosition < totalBuffer.length; i++){
+      BufferInfo bufferInfo = storage.get(i);
+      int start = i == fromIndex ? fromPosition : 0;
+      int length = Math.min(bufferInfo.actualSize - start,
+        totalBuffer.length - currentTargetPosition);
+      System.arraycopy(bufferInfo.buffer, start,
+        totalBuffer, currentTargetPosition, length);
+      currentTargetPosition += length;
+    }
+    return new String(totalBuffer);
   }
 
-  private int bufferSize(Position from, Position to){
-    if (UNLIMITED != to.length) {
-      if (to.listPosition < from.listPosition) {
-        throw new IllegalStateException(
-          "Cannot 'to' list position be before 'from' list position");
-      }
-      if (from.listPosition == to.listPosition
-        && to.arrayPosition < from.arrayPosition) {
-        throw new IllegalStateException(
-          "Cannot 'to' array position be before 'from' array position in the same list");
-      }
+  /**
+   * Same as value(from, to), but the value is kept in the slice,
+   *  a String is not created
+   */
+  FieldSlice slice(long from, long to, FieldSlice target){
+    int length = (int) (to - from);
+    if (from == to){
+      return target.wrap(target.own(0), 0, 0);
     }
-    int length = 0;
-    for (int i = 0; i <= to.listPosition; i++) {
-      BufferInfo bufferInfo = storage.get(i);
-      if (bufferInfo.isEmpty()){
-        throw new IllegalStateException("Buffer cannot be empty");
+    int fromIndex = chunkIndex(from);
+    BufferInfo fst = storage.get(fromIndex);
+    int fromPosition = (int) (from - fst.start);
+    if (to - fst.start <= fst.actualSize){
+      if (!bytes){
+        return target.wrap(fst.buffer, fromPosition, length);
       }
-      if (i == 0){ //the 1st buffer
-        length += lengthFstBuffer(to);
-      } else if (i == to.listPosition) { //the last buffer
-        length += lengthLstBuffer(to);
-      } else {
-        length += bufferInfo.actualSize;
+      if (singleByte || ascii(fst.bytes, fromPosition, length)){
+        return target.wrap(fst.bytes, fromPosition, length);
       }
     }
-    return length;
+    //split between chunks or not ASCII bytes, copied into the slice:
+    String value = value(from, to);
+    char[] own = target.own(value.length());
+    value.getChars(0, value.length(), own, 0);
+    return target.wrap(own, 0, value.length());
   }
 
-  private int lengthFstBuffer(Position to){
-    if (storage.get(0).actualSize < currentReadPosition.arrayPosition){
-      throw new IllegalStateException(
-        "Cannot actual size be less than current read position");
-    }
-    if (to.listPosition == 0
-      && storage.get(0).actualSize < to.arrayPosition){
-      throw new IllegalStateException(
-        "Cannot actual size be less than 'to' position");
+  private boolean ascii(ByteBuffer source, int offset, int length){
+    if (!StandardCharsets.UTF_8.equals(encoding)){
+      return false;
     }
-    if (storage.get(0).actualSize > bufferSize){
-      throw new IllegalStateException(
-        "Cannot actual size be more than the full buffer size");
+    for (int i = offset; i < offset + length; i++){
+      if (source.get(i) < 0){
+        return false;
+      }
     }
-
-    return to.listPosition == 0
-      ? to.arrayPosition - currentReadPosition.arrayPosition
-      : storage.get(0).actualSize - currentReadPosition.arrayPosition;
+    return true;
   }
 
-  private int lengthLstBuffer(Position to){
-    if (to.listPosition == 0){
-      throw new IllegalStateException("Wrong method usage. " +
-        "Can be used only for the last buffer in case more than one buffers participate");
+  private String bytesValue(long from, long to){
+    int fromIndex = chunkIndex(from);
+    BufferInfo fst = storage.get(fromIndex);
+    int fromPosition = (int) (from - fst.start);
+    int length = (int) (to - from);
+    if (fst.bytes.hasArray() && to - fst.start <= fst.actualSize){
+      return decode(fst.bytes.array(),
+        fst.bytes.arrayOffset() + fromPosition, length);
     }
-    if (storage.get(to.listPosition).actualSize < to.arrayPosition){
-      throw new IllegalStateException(
-        "Cannot actual size be less than required 'to' position");
+    byte[] totalBuffer = new byte[length];
+    int currentTargetPosition = 0;
+    for (int i = fromIndex; currentTargetPosition < length; i++){
+      BufferInfo bufferInfo = storage.get(i);
+      int start = i == fromIndex ? fromPosition : 0;
+      int chunkLength = Math.min(bufferInfo.actualSize - start,
+        length - currentTargetPosition);
+      ByteBuffer source = bufferInfo.bytes.duplicate();
+      source.position(start);
+      source.get(totalBuffer, currentTargetPosition, chunkLength);
+      currentTargetPosition += chunkLength;
     }
-    return to.arrayPosition;
+    return decode(totalBuffer, 0, length);
   }
 
   /**
-   * Moves position to the next symbol after the input parameter
-   *  if the current position = 1, length = 1, moves position to 3, but not to 2!
-   *
-   * return true if it could move current read position
-   *  returns false if there is not enough data in input, to move current read position
-   * @param totalLength
-   * @return
+   * Latin-1 and ASCII input, as well as pure ASCII values of UTF-8 input,
+   *  are turned into a String without a charset decoder
    */
-  private boolean movePositionAfter(int totalLength, int currentSum){
-    if (UNLIMITED == totalLength){
-      storage.clear();
-      currentReadPosition = Position.builder().build();
-      return true;
+  @SuppressWarnings("deprecation")
+  private String decode(byte[] source, int offset, int length){
+    if (singleByte){
+      return new String(source, 0, offset, length);
     }
-    while(totalLength != currentSum || storage.size() > 1){
-      for (int i = currentReadPosition.arrayPosition;
-           i < storage.get(0).actualSize; i++) {
-        currentSum++;
-        if (currentSum == totalLength){
-          currentReadPosition = Position.builder()
-            .listPosition(0)
-            .arrayPosition(i+1)
-            .build();
-          return true;
-        }
+    if (StandardCharsets.UTF_8.equals(encoding)){
+      int i = offset;
+      while (i < offset + length && source[i] >= 0){
+        i++;
+      }
+      if (i == offset + length){
+        return new String(source, 0, offset, length);
       }
-      //set it to the 1st position of the next line
-      currentReadPosition = Position.builder()
-        .listPosition(0)
-        .arrayPosition(0)
-        .build();
-      storage.remove(0); //remove the 1st buffer
     }
-    if (read()){
-      return movePositionAfter(totalLength, currentSum);
-    } else {
-      return false;
+    return new String(source, offset, length, encoding);
+  }
+
+  /**
+   * Moves the current read position to absolute offset,
+   *  removes all chunks before it
+   */
+  void release(long offset){
+    while (!storage.isEmpty()
+      && storage.get(0).start + storage.get(0).actualSize <= offset){
+      storage.removeFirst();
     }
+    readPosition = storage.isEmpty()
+      ? 0
+      : (int) (offset - storage.get(0).start);
   }
 }
@@ -0,0 +1,42 @@
+package com.savdev.commons.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads not decoded bytes into chunk arrays
+ */
+class StreamChunkSource implements ChunkSource {
+
+  final InputStream input;
+  final int bufferSize;
+  final ChunkBufferPool pool; //null - arrays are not pooled
+
+  StreamChunkSource(final InputStream input, final int bufferSize) {
+    this(input, bufferSize, null);
+  }
+
+  StreamChunkSource(
+    final InputStream input,
+    final int bufferSize,
+    final ChunkBufferPool pool) {
+    this.input = input;
+    this.bufferSize = bufferSize;
+    this.pool = pool;
+  }
+
+  @Override
+  public int read(BufferInfo chunk, int offset, int length) throws IOException {
+    if (chunk.bytes == null) {
+      chunk.bytes(ByteBuffer.wrap(
+        pool != null ? pool.borrowBytes() : new byte[bufferSize]));
+    }
+    return input.read(chunk.bytes.array(), offset, length);
+  }
+
+  @Override
+  public void close() throws IOException {
+    input.close();
+  }
+}
@@ -0,0 +1,132 @@
+package com.savdev.commons.file;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.savdev.commons.file.CsvTestData.write;
+
+public class ChunkBufferPoolTest {
+
+  static final String INPUT = "a,b\n1,2\n3,4\n5,6\n";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static List<Map<String, String>> read(
+    ChunkBufferPool pool,
+    boolean byteScanning,
+    int prefetch) {
+    CsvReader.CsvReaderBuilder builder = CsvReader.builder()
+      .input(IOUtils.toInputStream(INPUT, StandardCharsets.UTF_8))
+      .lineSeparator("\n")
+      .byteScanning(byteScanning)
+      .bufferPool(pool);
+    if (prefetch > 0) {
+      builder.prefetch(prefetch);
+    }
+    try (Stream<Map<String, String>> lines = builder.build().csvLines()) {
+      return lines.collect(Collectors.toList());
+    }
+  }
+
+  @Test
+  public void testArraysAreReusedByNextReaders() {
+    ChunkBufferPool pool = new ChunkBufferPool(4, 64);
+    for (boolean byteScanning : new boolean[]{false, true}) {
+      long misses = pool.misses();
+      Assert.assertEquals(3, read(pool, byteScanning, 0).size());
+      Assert.assertTrue(pool.misses() > misses);
+      misses = pool.misses();
+      long hits = pool.hits();
+      List<Map<String, String>> lines = read(pool, byteScanning, 0);
+      Assert.assertEquals("6", lines.get(2).get("b"));
+      Assert.assertEquals(misses, pool.misses());
+      Assert.assertTrue(pool.hits() > hits);
+    }
+  }
+
+  @Test
+  public void testPrefetchArraysAreReturned() {
+    ChunkBufferPool pool = new ChunkBufferPool(4, 64);
+    Assert.assertEquals(3, read(pool, false, 2).size());
+    long misses = pool.misses();
+    long hits = pool.hits();
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(3, read(pool, false, 2).size());
+    }
+    //arrays, kept by the closing thread, are not visible to a new background thread
+    Assert.assertTrue(pool.hits() - hits > pool.misses() - misses);
+  }
+
+  @Test
+  public void testConcurrentReaders() throws Exception {
+    ChunkBufferPool pool = new ChunkBufferPool(8, 16);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<List<Map<String, String>>>> results = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        final boolean byteScanning = i % 2 == 0;
+        results.add(executor.submit(() -> read(pool, byteScanning, 0)));
+      }
+      for (Future<List<Map<String, String>>> result : results) {
+        Assert.assertEquals("4", result.get().get(1).get("b"));
+      }
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+    Assert.assertTrue(pool.hits() > pool.misses());
+  }
+
+  @Test
+  public void testKeptArraysAreBounded() {
+    ChunkBufferPool pool = new ChunkBufferPool(4, 2);
+    for (int i = 0; i < 5; i++) {
+      pool.release(new char[4]);
+    }
+    for (int i = 0; i < 5; i++) {
+      pool.borrowChars();
+    }
+    Assert.assertEquals(2, pool.hits());
+    Assert.assertEquals(3, pool.misses());
+  }
+
+  @Test
+  public void testArrayReplacedByMappedWindowIsReleased() throws IOException {
+    ChunkBufferPool pool = new ChunkBufferPool(4, 2);
+    Path file = write(folder, INPUT);
+    BufferInfo chunk = new BufferInfo(null, ByteBuffer.wrap(pool.borrowBytes()), 0);
+    try (MappedChunkSource source = new MappedChunkSource(file, 0, pool)) {
+      Assert.assertEquals(4, source.read(chunk, 0, 4));
+    }
+    Assert.assertFalse(chunk.bytes.hasArray());
+    pool.borrowBytes();
+    Assert.assertEquals(1, pool.hits());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBufferSizeDiffersFromPool() {
+    CsvReader.builder()
+      .input(IOUtils.toInputStream(INPUT, StandardCharsets.UTF_8))
+      .bufferSize(16)
+      .bufferPool(new ChunkBufferPool(8, 16))
+      .build();
+  }
+}
@@ -0,0 +1,82 @@
+package com.savdev.commons.file;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+public class CsvBatchTest {
+
+  private static CsvReader.CsvReaderBuilder builder(String input) {
+    return CsvReader.builder()
+      .input(IOUtils.toInputStream(input, StandardCharsets.UTF_8))
+      .lineSeparator("\n")
+      .bufferSize(7)
+      .columnType("id", CsvColumnType.LONG);
+  }
+
+  @Test
+  public void testTypedVectors() {
+    CsvBatch batch = builder("id,name,rate,price,day\n" +
+      "1,\"a,b\",0.5,1.25,2018-01-02\n" +
+      "2,,,,\n" +
+      "3,ccc,1e2,7,1970-01-01\n")
+      .columnType("rate", CsvColumnType.DOUBLE)
+      .decimalColumn("price", 2)
+      .dateColumn("day", "yyyy-MM-dd")
+      .build()
+      .batches(10);
+    Assert.assertTrue(batch.next());
+    Assert.assertEquals(3, batch.size());
+    Assert.assertArrayEquals(new long[]{1, 2, 3},
+      Arrays.copyOf(batch.longs(0), 3));
+    Assert.assertEquals("a,b", batch.string(1, 0));
+    Assert.assertEquals("", batch.string(1, 1));
+    Assert.assertEquals("ccc", batch.string(1, 2));
+    Assert.assertEquals(0.5, batch.doubles(2)[0], 0);
+    Assert.assertEquals(100, batch.doubles(2)[2], 0);
+    Assert.assertEquals(125, batch.longs(3)[0]);
+    Assert.assertEquals(700, batch.longs(3)[2]);
+    Assert.assertEquals(LocalDate.of(2018, 1, 2).toEpochDay(), batch.longs(4)[0]);
+    for (int column = 1; column < 5; column++) {
+      Assert.assertFalse(batch.isNull(column, 0));
+      Assert.assertTrue(batch.isNull(column, 1));
+    }
+    Assert.assertEquals(2L, batch.nulls(1)[0]);
+    Assert.assertFalse(batch.next());
+  }
+
+  @Test
+  public void testVectorsAreReused() {
+    StringBuilder input = new StringBuilder("id,name\n");
+    for (int i = 0; i < 25; i++) {
+      input.append(i).append(',').append(i % 2 == 0 ? "" : "name" + i).append('\n');
+    }
+    CsvBatch batch = builder(input.toString()).build().batches(10);
+    long[] ids = null;
+    int rows = 0;
+    while (batch.next()) {
+      if (ids == null) {
+        ids = batch.longs(0);
+      }
+      Assert.assertSame(ids, batch.longs(0));
+      for (int row = 0; row < batch.size(); row++) {
+        Assert.assertEquals(rows, ids[row]);
+        Assert.assertEquals(rows % 2 == 0, batch.isNull(1, row));
+        Assert.assertEquals(rows % 2 == 0 ? "" : "name" + rows, batch.string(1, row));
+        rows++;
+      }
+    }
+    Assert.assertEquals(25, rows);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNotLongVector() {
+    CsvBatch batch = builder("id,name\n1,a\n").build().batches(10);
+    Assert.assertTrue(batch.next());
+    batch.longs(1);
+  }
+}
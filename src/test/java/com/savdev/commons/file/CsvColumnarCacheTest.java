@@ -0,0 +1,289 @@
+package com.savdev.commons.file;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static com.savdev.commons.file.CsvTestData.lines;
+import static com.savdev.commons.file.CsvTestData.write;
+
+public class CsvColumnarCacheTest {
+
+  static final int ROWS = 20_000;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path csvFile() throws IOException {
+    StringBuilder csv = new StringBuilder("id,price,rate,day,city,note\n");
+    for (int i = 0; i < ROWS; i++) {
+      csv.append(i).append(',');
+      csv.append(i / 100).append('.').append(String.format("%02d", i % 100)).append(',');
+      csv.append(i % 7 == 0 ? "" : (i % 8) + ".5").append(',');
+      csv.append(String.format("2020-01-%02d", i % 28 + 1)).append(',');
+      csv.append("city").append(i % 10).append(',');
+      csv.append(i % 3 == 0 ? "\"a,b\"" : "n" + i).append('\n');
+    }
+    return write(folder, csv);
+  }
+
+  private static CsvReader reader(Path file) {
+    return CsvReader.builder()
+      .input(file)
+      .lineSeparator("\n")
+      .columnType("id", CsvColumnType.LONG)
+      .decimalColumn("price", 2)
+      .columnType("rate", CsvColumnType.DOUBLE)
+      .dateColumn("day", "yyyy-MM-dd")
+      .dictionaryColumn("city")
+      .build();
+  }
+
+  @Test
+  public void testSameRowsAsReader() throws IOException {
+    Path file = csvFile();
+    Path cache = folder.getRoot().toPath().resolve("csv.cache");
+    try (CsvColumnarCache columnar = CsvColumnarCache.open(reader(file), cache)) {
+      Assert.assertEquals(ROWS, columnar.rows());
+      Assert.assertEquals((ROWS + CsvColumnarCache.BLOCK_ROWS - 1) / CsvColumnarCache.BLOCK_ROWS,
+        columnar.blocks());
+      Assert.assertEquals(lines(reader(file)),
+        columnar.csvLines().collect(Collectors.toList()));
+      AtomicLong sum = new AtomicLong();
+      Assert.assertEquals(ROWS, columnar.parse((field, value) -> {
+        if (field == 0) {
+          sum.addAndGet(Long.parseLong(value.toString()));
+        }
+      }));
+      Assert.assertEquals((long) ROWS * (ROWS - 1) / 2, sum.get());
+    }
+  }
+
+  @Test
+  public void testVectorsAndStatistics() throws IOException {
+    Path file = csvFile();
+    Path cache = folder.getRoot().toPath().resolve("csv.cache");
+    try (CsvColumnarCache columnar = CsvColumnarCache.open(reader(file), cache)) {
+      CsvColumnarCache.Block block = columnar.block(1);
+      int id = columnar.columnIndex("id");
+      int rate = columnar.columnIndex("rate");
+      int city = columnar.columnIndex("city");
+      Assert.assertEquals(CsvColumnarCache.BLOCK_ROWS, block.size());
+      Assert.assertEquals(CsvColumnarCache.BLOCK_ROWS, block.longs(id)[0]);
+      Assert.assertEquals(CsvColumnarCache.BLOCK_ROWS, block.minLong(id));
+      Assert.assertEquals(2 * CsvColumnarCache.BLOCK_ROWS - 1, block.maxLong(id));
+      Assert.assertEquals(0.5, block.minDouble(rate), 0);
+      Assert.assertEquals(7.5, block.maxDouble(rate), 0);
+      //8192 % 7 == 2
+      Assert.assertTrue(block.isNull(rate, 5));
+      Assert.assertEquals("", block.string(rate, 5));
+      Assert.assertEquals(10, columnar.dictionary(city).size());
+      Assert.assertEquals("city2",
+        columnar.dictionary(city).value(block.codes(city)[0]));
+      Assert.assertEquals(ImmutableMap.builder()
+          .put("id", "8193").put("price", "81.93").put("rate", "1.5")
+          .put("day", "2020-01-18").put("city", "city3").put("note", "a,b")
+          .build(),
+        block.toMap(1));
+      Assert.assertEquals(-1, columnar.columnIndex("missing"));
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNotLongVector() throws IOException {
+    Path file = csvFile();
+    Path cache = folder.getRoot().toPath().resolve("csv.cache");
+    try (CsvColumnarCache columnar = CsvColumnarCache.open(reader(file), cache)) {
+      columnar.block(0).longs(columnar.columnIndex("city"));
+    }
+  }
+
+  @Test
+  public void testCacheIsReused() throws IOException {
+    Path file = csvFile();
+    Path cache = folder.getRoot().toPath().resolve("csv.cache");
+    CsvColumnarCache.open(reader(file), cache).close();
+    CsvReader reader = reader(file);
+    try (CsvColumnarCache columnar = CsvColumnarCache.open(reader, cache)) {
+      Assert.assertFalse(reader.headerCalculated);
+      Assert.assertEquals(ROWS, columnar.rows());
+    }
+  }
+
+  @Test
+  public void testStaleCacheIsCompiled() throws IOException {
+    Path file = csvFile();
+    Path cache = folder.getRoot().toPath().resolve("csv.cache");
+    CsvColumnarCache.open(reader(file), cache).close();
+    //the same size, other content in the middle
+    FileTime modified = Files.getLastModifiedTime(file);
+    byte[] bytes = Files.readAllBytes(file);
+    int middle = new String(bytes, StandardCharsets.UTF_8).indexOf(",n10001\n");
+    bytes[middle + 1] = 'm';
+    Files.write(file, bytes);
+    Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 1000));
+    CsvReader reader = reader(file);
+    try (CsvColumnarCache columnar = CsvColumnarCache.open(reader, cache)) {
+      Assert.assertTrue(reader.headerCalculated);
+      Assert.assertEquals(lines(reader(file)),
+        columnar.csvLines().collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  public void testTouchedFileIsNotCompiled() throws IOException {
+    Path file = csvFile();
+    Path cache = folder.getRoot().toPath().resolve("csv.cache");
+    CsvColumnarCache.open(reader(file), cache).close();
+    FileTime modified = Files.getLastModifiedTime(file);
+    Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 1000));
+    CsvReader reader = reader(file);
+    CsvColumnarCache.open(reader, cache).close();
+    Assert.assertFalse(reader.headerCalculated);
+    //the new modification time is kept in the footer, after the size
+    ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(cache));
+    long footer = bytes.getLong(bytes.limit() - 8);
+    Assert.assertEquals(modified.toMillis() + 1000, bytes.getLong((int) footer + 8));
+    reader = reader(file);
+    try (CsvColumnarCache columnar = CsvColumnarCache.open(reader, cache)) {
+      Assert.assertFalse(reader.headerCalculated);
+      Assert.assertEquals(ROWS, columnar.rows());
+    }
+  }
+
+  @Test
+  public void testOtherReaderSettingsAreCompiled() throws IOException {
+    Path file = csvFile();
+    Path cache = folder.getRoot().toPath().resolve("csv.cache");
+    CsvColumnarCache.open(reader(file), cache).close();
+    CsvReader projected = CsvReader.builder()
+      .input(file)
+      .lineSeparator("\n")
+      .columns("price", "city")
+      .build();
+    try (CsvColumnarCache columnar = CsvColumnarCache.open(projected, cache)) {
+      Assert.assertTrue(projected.headerCalculated);
+      Assert.assertEquals(2, columnar.columns());
+      Assert.assertEquals("1.05",
+        columnar.block(0).string(columnar.columnIndex("price"), 105));
+    }
+    CsvReader filtered = CsvReader.builder()
+      .input(file)
+      .lineSeparator("\n")
+      .columns("price", "city")
+      .where("city", city -> "city3".contentEquals(city))
+      .build();
+    try (CsvColumnarCache columnar = CsvColumnarCache.open(filtered, cache)) {
+      Assert.assertEquals(ROWS / 10, columnar.rows());
+    }
+    //a filtered cache is not reused by the same filters
+    filtered = CsvReader.builder()
+      .input(file)
+      .lineSeparator("\n")
+      .columns("price", "city")
+      .where("city", city -> "city4".contentEquals(city))
+      .build();
+    try (CsvColumnarCache columnar = CsvColumnarCache.open(filtered, cache)) {
+      Assert.assertEquals("city4", columnar.block(0).string(1, 0));
+    }
+    CsvReader reader = reader(file);
+    try (CsvColumnarCache columnar = CsvColumnarCache.open(reader, cache)) {
+      Assert.assertTrue(reader.headerCalculated);
+      Assert.assertEquals(ROWS, columnar.rows());
+    }
+  }
+
+  @Test
+  public void testOnlyDictionaryColumnsAreEncoded() throws IOException {
+    Path file = csvFile();
+    Path cache = folder.getRoot().toPath().resolve("csv.cache");
+    try (CsvColumnarCache columnar = CsvColumnarCache.open(reader(file), cache)) {
+      int note = columnar.columnIndex("note");
+      CsvColumnarCache.Block block = columnar.block(0);
+      Assert.assertNull(columnar.dictionaries[note]);
+      Assert.assertNotNull(block.textChars[note]);
+      Assert.assertEquals("a,b", block.string(note, 3));
+      Assert.assertEquals("n4", block.string(note, 4));
+      Assert.assertNotNull(columnar.dictionaries[columnar.columnIndex("city")]);
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNotDictionaryColumn() throws IOException {
+    Path file = csvFile();
+    Path cache = folder.getRoot().toPath().resolve("csv.cache");
+    try (CsvColumnarCache columnar = CsvColumnarCache.open(reader(file), cache)) {
+      columnar.dictionary(columnar.columnIndex("note"));
+    }
+  }
+
+  @Test
+  public void testOriginalTextIsKept() throws IOException {
+    Path file = write(folder, "id,price,rate,day,city,note\n" +
+      "007,1.5,100,2020-01-02,a,x\n" +
+      "8,2.00,1e7,2020-01-03,b,\n" +
+      "9,3.10,,2020-01-04,a,y\n");
+    Path cache = folder.getRoot().toPath().resolve("text.cache");
+    try (CsvColumnarCache columnar = CsvColumnarCache.open(reader(file), cache)) {
+      Assert.assertEquals(lines(reader(file)),
+        columnar.csvLines().collect(Collectors.toList()));
+      CsvColumnarCache.Block block = columnar.block(0);
+      int id = columnar.columnIndex("id");
+      int rate = columnar.columnIndex("rate");
+      Assert.assertEquals(7, block.longs(id)[0]);
+      Assert.assertEquals(1e7, block.doubles(rate)[1], 0);
+      Assert.assertEquals("007", block.string(id, 0));
+      Assert.assertEquals("1e7", block.string(rate, 1));
+      Assert.assertNull(block.textChars[columnar.columnIndex("day")]);
+    }
+  }
+
+  @Test
+  public void testCanonicalTextIsNotKept() throws IOException {
+    Path file = csvFile();
+    Path cache = folder.getRoot().toPath().resolve("csv.cache");
+    try (CsvColumnarCache columnar = CsvColumnarCache.open(reader(file), cache)) {
+      CsvColumnarCache.Block block = columnar.block(0);
+      for (String column : new String[]{"id", "price", "rate", "day"}) {
+        Assert.assertNull(column, block.textChars[columnar.columnIndex(column)]);
+      }
+    }
+  }
+
+  @Test
+  public void testEmptyFile() throws IOException {
+    Path file = write(folder, "a,b\n");
+    Path cache = folder.getRoot().toPath().resolve("empty.cache");
+    try (CsvColumnarCache columnar = CsvColumnarCache.open(
+      CsvReader.builder().input(file).lineSeparator("\n").build(), cache)) {
+      Assert.assertEquals(0, columnar.rows());
+      Assert.assertEquals(0, columnar.blocks());
+      Assert.assertEquals("b", columnar.columnName(1));
+    }
+  }
+
+  @Test
+  public void testFormatEpochDay() {
+    Assert.assertEquals("17.01.2020",
+      CsvColumnarCache.formatEpochDay(
+        FieldDecoder.parseEpochDay("17.01.2020", "dd.MM.yyyy"), "dd.MM.yyyy"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotMappedReader() {
+    CsvColumnarCache.open(
+      CsvReader.builder().input("a\n1\n").lineSeparator("\n").build(),
+      folder.getRoot().toPath().resolve("csv.cache"));
+  }
+}
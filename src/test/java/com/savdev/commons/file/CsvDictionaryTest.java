@@ -0,0 +1,83 @@
+package com.savdev.commons.file;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class CsvDictionaryTest {
+
+  static final String INPUT = "id,currency\n" +
+    "1,EUR\n" +
+    "2,USD\n" +
+    "3,EUR\n" +
+    "4,\n" +
+    "5,USD\n";
+
+  private static CsvReader reader() {
+    return CsvReader.builder()
+      .input(IOUtils.toInputStream(INPUT, StandardCharsets.UTF_8))
+      .lineSeparator("\n")
+      .bufferSize(5)
+      .dictionaryColumn("currency")
+      .build();
+  }
+
+  @Test
+  public void testCodesAreStable() {
+    CsvDictionary dictionary = new CsvDictionary();
+    for (int i = 0; i < 1000; i++) {
+      Assert.assertEquals(i, dictionary.code("value" + i));
+    }
+    for (int i = 0; i < 1000; i++) {
+      Assert.assertEquals(i, dictionary.code(new StringBuilder("value" + i)));
+      Assert.assertEquals("value" + i, dictionary.value(i));
+    }
+    Assert.assertEquals(1000, dictionary.size());
+  }
+
+  @Test
+  public void testCanonicalValuesInLines() {
+    List<Map<String, String>> lines = reader().csvLines()
+      .collect(Collectors.toList());
+    Assert.assertEquals("EUR", lines.get(0).get("currency"));
+    Assert.assertSame(lines.get(0).get("currency"), lines.get(2).get("currency"));
+    Assert.assertSame(lines.get(1).get("currency"), lines.get(4).get("currency"));
+    Assert.assertNotSame(lines.get(0).get("id"), lines.get(2).get("id"));
+  }
+
+  @Test
+  public void testCodesInRowsAndBatches() {
+    CsvRow row = reader().rows();
+    int[] expected = {0, 1, 0, 2, 1};
+    for (int code : expected) {
+      Assert.assertTrue(row.next());
+      Assert.assertEquals(code, row.code("currency"));
+    }
+    Assert.assertEquals(3, row.dictionary(1).size());
+
+    CsvBatch batch = reader().batches(10);
+    Assert.assertTrue(batch.next());
+    for (int i = 0; i < expected.length; i++) {
+      Assert.assertEquals(expected[i], batch.codes(1)[i]);
+    }
+    Assert.assertSame(batch.string(1, 0), batch.string(1, 2));
+    Assert.assertTrue(batch.isNull(1, 3));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTypedDictionaryColumn() {
+    CsvReader.builder()
+      .input(IOUtils.toInputStream(INPUT, StandardCharsets.UTF_8))
+      .lineSeparator("\n")
+      .dictionaryColumn("id")
+      .columnType("id", CsvColumnType.LONG)
+      .build()
+      .csvLines()
+      .count();
+  }
+}
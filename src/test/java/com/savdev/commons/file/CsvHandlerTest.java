@@ -0,0 +1,116 @@
+package com.savdev.commons.file;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.savdev.commons.file.CsvTestData.dsvFile;
+
+public class CsvHandlerTest {
+
+  private static CsvReader.CsvReaderBuilder builder(InputStream input) {
+    return CsvReader.builder()
+      .input(input)
+      .columnSeparator("||")
+      .lineSeparator("{EOL}")
+      .bufferSize(16);
+  }
+
+  /**
+   * Collects records as csvLines() does
+   */
+  static class Collector implements CsvHandler {
+    final List<Map<String, String>> records = Lists.newArrayList();
+    final int limit;
+    String[] columnNames;
+    Map<String, String> record;
+
+    Collector(int limit) {
+      this.limit = limit;
+    }
+
+    @Override
+    public void header(String[] columnNames) {
+      this.columnNames = columnNames;
+    }
+
+    @Override
+    public void startRecord() {
+      record = Maps.newHashMap();
+    }
+
+    @Override
+    public void field(int column, CharSequence value) {
+      record.put(columnNames[column], value.toString());
+    }
+
+    @Override
+    public boolean endRecord() {
+      records.add(record);
+      return records.size() < limit;
+    }
+  }
+
+  @Test
+  public void testSameResultAsCsvLines() {
+    List<Map<String, String>> expected = builder(dsvFile())
+      .build()
+      .csvLines()
+      .collect(Collectors.toList());
+    for (boolean byteScanning : new boolean[]{false, true}) {
+      Collector collector = new Collector(Integer.MAX_VALUE);
+      long records = builder(dsvFile())
+        .byteScanning(byteScanning)
+        .build()
+        .parse(collector);
+      Assert.assertEquals(expected.size(), records);
+      Assert.assertEquals(expected, collector.records);
+    }
+  }
+
+  @Test
+  public void testStopEarly() {
+    Collector collector = new Collector(2);
+    CsvReader reader = builder(dsvFile()).build();
+    Assert.assertEquals(2, reader.parse(collector));
+    Assert.assertEquals(2, collector.records.size());
+    Assert.assertTrue(reader.rows().next());
+  }
+
+  @Test
+  public void testSelectedAndDictionaryColumns() {
+    List<String> values = Lists.newArrayList();
+    String[][] header = new String[1][];
+    CsvReader.builder()
+      .input(CsvReaderProjectionTest.INPUT)
+      .lineSeparator("\n")
+      .columns("d", "b")
+      .dictionaryColumn("d")
+      .build()
+      .parse(new CsvHandler() {
+        @Override
+        public void header(String[] columnNames) {
+          header[0] = columnNames;
+        }
+
+        @Override
+        public void field(int column, CharSequence value) {
+          values.add(column + "=" + value);
+        }
+      });
+    Assert.assertArrayEquals(new String[]{"d", "b"}, header[0]);
+    Assert.assertEquals(Arrays.asList("0=4", "1=x,y", "0=9", "1=6"), values);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullHandler() {
+    builder(dsvFile()).build().parse(null);
+  }
+}
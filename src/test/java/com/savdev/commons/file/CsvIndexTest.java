@@ -0,0 +1,110 @@
+package com.savdev.commons.file;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.savdev.commons.file.CsvTestData.write;
+
+public class CsvIndexTest {
+
+  static final int ROWS = 5_000;
+  static final int STEP = 100;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  //quoted values contain line and column separators
+  private Path csvFile() throws IOException {
+    StringBuilder csv = new StringBuilder("id,text\n");
+    for (int i = 0; i < ROWS; i++) {
+      csv.append(i).append(',');
+      if (i % 3 == 0) {
+        csv.append("\"line 1\nline 2,").append(i).append("\"");
+      } else {
+        csv.append("plain ").append(i);
+      }
+      csv.append('\n');
+    }
+    return write(folder, csv);
+  }
+
+  private static CsvReader.CsvReaderBuilder builder(Path file) {
+    return CsvReader.builder()
+      .input(file)
+      .lineSeparator("\n")
+      .bufferSize(256);
+  }
+
+  @Test
+  public void testSeek() throws IOException {
+    Path file = csvFile();
+    List<Map<String, String>> expected = builder(file).build()
+      .csvLines().collect(Collectors.toList());
+    CsvIndex index = CsvIndex.build(builder(file).build(), STEP);
+    Assert.assertEquals(ROWS, index.records());
+    Assert.assertEquals(ROWS / STEP, index.offsets.length);
+    try (CsvReader reader = builder(file).build()) {
+      for (int record : new int[]{4_321, 0, 1, 99, 100, 101, ROWS - 1}) {
+        CsvRow row = reader.seek(index, record).rows();
+        Assert.assertTrue(row.next());
+        Assert.assertEquals(expected.get(record), row.toMap());
+      }
+      //a range of records
+      Assert.assertEquals(expected.subList(250, 260),
+        reader.seek(index, 250).csvLines().limit(10).collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  public void testIndexAsSideEffectOfCsvLines() throws IOException {
+    Path file = csvFile();
+    CsvReader reader = builder(file).indexEvery(STEP).build();
+    Assert.assertEquals(ROWS, reader.csvLines().parallel().count());
+    CsvIndex index = reader.index();
+    Assert.assertArrayEquals(
+      CsvIndex.build(builder(file).build(), STEP).offsets, index.offsets);
+  }
+
+  @Test
+  public void testSidecar() throws IOException {
+    Path file = csvFile();
+    Path sidecar = folder.getRoot().toPath().resolve("csv.idx");
+    Assert.assertFalse(CsvIndex.load(sidecar, file).isPresent());
+    CsvIndex built = CsvIndex.loadOrBuild(sidecar, builder(file).build(), STEP);
+    CsvIndex loaded = CsvIndex.load(sidecar, file).get();
+    Assert.assertEquals(built.records(), loaded.records());
+    Assert.assertArrayEquals(built.offsets, loaded.offsets);
+    Assert.assertTrue(Files.size(sidecar) < ROWS / STEP * 3 + 64);
+
+    Files.write(file, "1,x\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    Assert.assertFalse(built.valid(file));
+    Assert.assertFalse(CsvIndex.load(sidecar, file).isPresent());
+    Assert.assertEquals(ROWS + 1,
+      CsvIndex.loadOrBuild(sidecar, builder(file).build(), STEP).records());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testStaleIndex() throws IOException {
+    Path file = csvFile();
+    CsvIndex index = CsvIndex.build(builder(file).build(), STEP);
+    Files.write(file, Arrays.asList("1,x"), StandardOpenOption.APPEND);
+    builder(file).build().seek(index, 1);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testIndexOfNotReadFile() throws IOException {
+    builder(csvFile()).indexEvery(STEP).build().index();
+  }
+}
@@ -0,0 +1,139 @@
+package com.savdev.commons.file;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static com.savdev.commons.file.CsvTestData.write;
+
+public class CsvKeyIndexTest {
+
+  static final int ROWS = 5_000;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path csvFile() throws IOException {
+    StringBuilder csv = new StringBuilder("name,id,text\n");
+    for (int i = 0; i < ROWS; i++) {
+      csv.append("n").append(i).append(',');
+      csv.append(i % 5 == 0 ? "\"id\n" + i + "\"" : "id" + i).append(',');
+      csv.append(i % 3 == 0 ? "\"a,b\"" : "t" + i).append('\n');
+    }
+    return write(folder, csv);
+  }
+
+  private static CsvReader reader(Path file) {
+    return CsvReader.builder()
+      .input(file)
+      .lineSeparator("\n")
+      .bufferSize(256)
+      .build();
+  }
+
+  private static void append(Path file, String csv) throws IOException {
+    Files.write(file, csv.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+  }
+
+  @Test
+  public void testLookup() throws IOException {
+    Path file = csvFile();
+    Path sidecar = folder.getRoot().toPath().resolve("id.key");
+    try (CsvKeyIndex index = CsvKeyIndex.build(reader(file), "id", sidecar)) {
+      Assert.assertEquals(ROWS, index.size());
+      Assert.assertEquals(ImmutableMap.of("name", "n4321", "id", "id4321", "text", "t4321"),
+        index.lookup("id4321").get());
+      Assert.assertEquals(ImmutableMap.of("name", "n15", "id", "id\n15", "text", "a,b"),
+        index.lookup("id\n15").get());
+      Assert.assertEquals("n0", index.lookup("id\n0").get().get("name"));
+      Assert.assertFalse(index.lookup("id15").isPresent());
+      Assert.assertFalse(index.lookup("missing").isPresent());
+    }
+  }
+
+  @Test
+  public void testLookupIgnoresFiltersAndReusesMapping() throws IOException {
+    Path file = csvFile();
+    Path sidecar = folder.getRoot().toPath().resolve("id.key");
+    CsvKeyIndex.build(reader(file), "id", sidecar).close();
+    CsvReader filtered = CsvReader.builder()
+      .input(file)
+      .lineSeparator("\n")
+      .bufferSize(256)
+      .where("name", name -> "n0".contentEquals(name))
+      .build();
+    try (CsvKeyIndex index = CsvKeyIndex.open(filtered, "id", sidecar)) {
+      Assert.assertEquals("n7", index.lookup("id7").get().get("name"));
+      ByteBuffer mapped = index.file;
+      Assert.assertNotNull(mapped);
+      Assert.assertEquals("n4321", index.lookup("id4321").get().get("name"));
+      Assert.assertEquals("n2", index.lookup("id2").get().get("name"));
+      Assert.assertSame(mapped, index.file);
+    }
+  }
+
+  @Test
+  public void testOpenExistingAndAppended() throws IOException {
+    Path file = csvFile();
+    Path sidecar = folder.getRoot().toPath().resolve("id.key");
+    CsvKeyIndex.open(reader(file), "id", sidecar).close();
+    try (CsvKeyIndex index = CsvKeyIndex.open(reader(file), "id", sidecar)) {
+      Assert.assertEquals(ROWS, index.size());
+      Assert.assertEquals("n7", index.lookup("id7").get().get("name"));
+    }
+    append(file, "x1,new1,y\nx2,id7,y\n");
+    try (CsvKeyIndex index = CsvKeyIndex.open(reader(file), "id", sidecar)) {
+      Assert.assertEquals(ROWS + 2, index.size());
+      Assert.assertEquals("x1", index.lookup("new1").get().get("name"));
+      //the 1st record with the key
+      Assert.assertEquals("n7", index.lookup("id7").get().get("name"));
+    }
+  }
+
+  @Test
+  public void testChangedFileIsRebuilt() throws IOException {
+    Path file = csvFile();
+    Path sidecar = folder.getRoot().toPath().resolve("id.key");
+    CsvKeyIndex.build(reader(file), "id", sidecar).close();
+    Files.write(file, "name,id,text\na,k1,b\n".getBytes(StandardCharsets.UTF_8));
+    try (CsvKeyIndex index = CsvKeyIndex.open(reader(file), "id", sidecar)) {
+      Assert.assertEquals(1, index.size());
+      Assert.assertEquals("a", index.lookup("k1").get().get("name"));
+    }
+    //another key column
+    try (CsvKeyIndex index = CsvKeyIndex.open(reader(file), "name", sidecar)) {
+      Assert.assertEquals("k1", index.lookup("a").get().get("id"));
+    }
+  }
+
+  @Test
+  public void testSort() {
+    CsvKeyIndex.Entries entries = new CsvKeyIndex.Entries();
+    Random random = new Random(1);
+    for (int i = 0; i < 10_000; i++) {
+      entries.add(random.nextInt(100) - 50, i);
+    }
+    entries.sort();
+    for (int i = 1; i < entries.size; i++) {
+      Assert.assertTrue(entries.hashes[i - 1] < entries.hashes[i]
+        || entries.hashes[i - 1] == entries.hashes[i]
+        && entries.offsets[i - 1] < entries.offsets[i]);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotExistingKeyColumn() throws IOException {
+    CsvKeyIndex.build(reader(csvFile()), "missing",
+      folder.getRoot().toPath().resolve("id.key"));
+  }
+}
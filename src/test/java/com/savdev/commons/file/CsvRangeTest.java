@@ -0,0 +1,208 @@
+package com.savdev.commons.file;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.savdev.commons.file.CsvTestData.quotedCsv;
+import static com.savdev.commons.file.CsvTestData.write;
+
+public class CsvRangeTest {
+
+  static final int ROWS = 2_000;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path csvFile(boolean withHeader) throws IOException {
+    return quotedCsv(folder, ROWS, 2, withHeader);
+  }
+
+  private static List<Map<String, String>> expected(Path file) throws IOException {
+    try (CsvReader r = CsvReader.builder()
+      .input(Files.newInputStream(file))
+      .lineSeparator("\n")
+      .build()) {
+      return r.csvLines().collect(Collectors.toList());
+    }
+  }
+
+  private static List<Map<String, String>> readRanges(
+    Path file,
+    List<CsvRange> ranges,
+    CsvHeader header) {
+    List<Map<String, String>> result = new ArrayList<>();
+    for (CsvRange range : ranges) {
+      try (CsvReader r = CsvReader.builder()
+        .range(file, range.start(), range.end(), header)
+        .lineSeparator("\n")
+        .bufferSize(64)
+        .build()) {
+        result.addAll(r.csvLines().collect(Collectors.toList()));
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void testRangesReadEveryRecordOnce() throws IOException {
+    Path file = csvFile(true);
+    List<Map<String, String>> expected = expected(file);
+    try (CsvReader r = CsvReader.builder().input(file).lineSeparator("\n").build()) {
+      CsvHeader header = r.header();
+      Assert.assertEquals(Arrays.asList("id", "text", "note"), header.columnNames());
+      Assert.assertEquals("id,text,note\n".length(), header.dataOffset());
+      for (int count : new int[]{1, 2, 3, 7, 50}) {
+        List<CsvRange> ranges = CsvRange.plan(r, count);
+        Assert.assertEquals(count, ranges.size());
+        Assert.assertEquals(Files.size(file), ranges.get(count - 1).end());
+        Assert.assertEquals(expected, readRanges(file, ranges, header));
+      }
+    }
+  }
+
+  //every record is longer than a range, quoted values have many lines
+  @Test
+  public void testMultiLineQuotedValues() throws IOException {
+    StringBuilder csv = new StringBuilder("id,note\n");
+    for (int i = 0; i < 20; i++) {
+      csv.append(i).append(",\"");
+      for (int line = 0; line < 8; line++) {
+        csv.append("line ").append(line).append(", some text\n");
+      }
+      csv.append("end\"\n");
+    }
+    Path file = write(folder, csv);
+    try (CsvReader r = CsvReader.builder().input(file).lineSeparator("\n").build()) {
+      for (int count : new int[]{7, 100}) {
+        List<Map<String, String>> records =
+          readRanges(file, CsvRange.plan(r, count), r.header());
+        Assert.assertEquals(expected(file), records);
+        Assert.assertEquals(20, records.size());
+      }
+    }
+  }
+
+  @Test
+  public void testEveryRangeBoundary() throws IOException {
+    Path file = write(folder, "a,b\n1,\"x\ny\"\n2,z\n\"3\",w\n");
+    List<Map<String, String>> expected = expected(file);
+    CsvHeader header = new CsvHeader(Arrays.asList("a", "b"), 4);
+    long size = Files.size(file);
+    for (long first = 0; first <= size; first++) {
+      for (long second = first; second <= size; second++) {
+        List<CsvRange> ranges = Arrays.asList(
+          new CsvRange(0, first), new CsvRange(first, second), new CsvRange(second, size));
+        Assert.assertEquals("boundaries = " + ranges, expected, readRanges(file, ranges, header));
+      }
+    }
+  }
+
+  //a line start inside the quoted value is rejected by the short record after it
+  @Test
+  public void testBoundaryInsideQuotedValue() throws IOException {
+    Path file = write(folder, "a,b\n1,\"x\ny,z\nw\"\n2,v\n");
+    CsvHeader header = new CsvHeader(Arrays.asList("a", "b"), 4);
+    try (CsvReader r = CsvReader.builder()
+      .range(file, 10, Files.size(file), header)
+      .lineSeparator("\n")
+      .build()) {
+      Assert.assertEquals(ImmutableMap.of("a", "2", "b", "v"), r.csvLines().findFirst().get());
+    }
+    Assert.assertEquals(expected(file),
+      readRanges(file, Arrays.asList(new CsvRange(0, 10), new CsvRange(10, 30)), header));
+  }
+
+  //lines of the quoted value look like records, the previous range detects it
+  @Test(expected = IllegalStateException.class)
+  public void testQuotedValueOfRecordLines() throws IOException {
+    StringBuilder csv = new StringBuilder("a,b\n1,\"");
+    for (int i = 0; i < 2 * RecordStarts.RESYNC_RECORDS; i++) {
+      csv.append(i).append(",x\n");
+    }
+    csv.append("\"\n2,z\n");
+    Path file = write(folder, csv);
+    CsvHeader header = new CsvHeader(Arrays.asList("a", "b"), 4);
+    readRanges(file, Arrays.asList(new CsvRange(0, 20), new CsvRange(20, Files.size(file))), header);
+  }
+
+  @Test
+  public void testFileWithoutHeaderLine() throws IOException {
+    Path file = csvFile(false);
+    CsvHeader header = new CsvHeader(Arrays.asList("id", "text", "note"));
+    try (CsvReader r = CsvReader.builder()
+      .range(file, 0, Files.size(file), header)
+      .lineSeparator("\n")
+      .build()) {
+      List<Map<String, String>> records = readRanges(file, CsvRange.plan(r, 4), header);
+      Assert.assertEquals(ROWS, records.size());
+      Assert.assertEquals(ImmutableMap.of("id", "1", "text", "plain 1", "note", "n1"),
+        records.get(1));
+    }
+  }
+
+  @Test
+  public void testRowsOfRange() throws IOException {
+    Path file = write(folder, "a,b\n1,2\n3,4\n5,6\n");
+    CsvHeader header = new CsvHeader(Arrays.asList("a", "b"), 4);
+    try (CsvReader r = CsvReader.builder()
+      .range(file, 8, 12, header)
+      .lineSeparator("\n")
+      .build()) {
+      CsvRow row = r.rows();
+      Assert.assertTrue(row.next());
+      Assert.assertEquals("3", row.get("a"));
+      Assert.assertFalse(row.next());
+    }
+  }
+
+  @Test
+  public void testStartIsNotRecordStart() throws IOException {
+    Path file = write(folder, "a,b\n1,2\n3,4\n");
+    try (CsvReader r = CsvReader.builder()
+      .range(file, 5, 12, new CsvHeader(Arrays.asList("a", "b"), 4))
+      .lineSeparator("\n")
+      .build()) {
+      Assert.assertEquals(Arrays.asList(ImmutableMap.of("a", "3", "b", "4")),
+        r.csvLines().collect(Collectors.toList()));
+    }
+  }
+
+  //the record, crossing the end, is read through its end
+  @Test
+  public void testEndIsNotRecordStart() throws IOException {
+    Path file = write(folder, "a,b\n1,2\n3,4\n5,6\n");
+    try (CsvReader r = CsvReader.builder()
+      .range(file, 4, 10, new CsvHeader(Arrays.asList("a", "b"), 4))
+      .lineSeparator("\n")
+      .build()) {
+      Assert.assertEquals(2, r.csvLines().count());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownDataOffset() throws IOException {
+    CsvReader.builder()
+      .range(csvFile(true), 0, 10, new CsvHeader(Arrays.asList("a"), -1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotByteScannableEncoding() throws IOException {
+    CsvReader.builder()
+      .range(csvFile(true), 0, 10, new CsvHeader(Arrays.asList("a")))
+      .encoding(StandardCharsets.UTF_16)
+      .build();
+  }
+}
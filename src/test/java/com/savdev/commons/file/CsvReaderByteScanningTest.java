@@ -0,0 +1,99 @@
+package com.savdev.commons.file;
+
+import com.savdev.commons.TestUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.savdev.commons.file.FileUtils.fileUtils;
+
+public class CsvReaderByteScanningTest {
+
+  static final String INPUT = "name;city\n" +
+    "Jürgen;\"München;Bayern\"\n" +
+    "Zoë;Ærø\n";
+
+  private static List<Map<String, String>> lines(
+    final InputStream input,
+    final Charset encoding,
+    final String lineSeparator,
+    final String columnSeparator,
+    final int bufferSize,
+    final boolean byteScanning) {
+    return CsvReader.builder()
+      .input(input)
+      .encoding(encoding)
+      .lineSeparator(lineSeparator)
+      .columnSeparator(columnSeparator)
+      .bufferSize(bufferSize)
+      .byteScanning(byteScanning)
+      .build()
+      .csvLines()
+      .collect(Collectors.toList());
+  }
+
+  @Test
+  public void testUtf8MultiByteCharsSplitAcrossBuffers() {
+    //small buffers split 2 bytes chars and the quoted value
+    for (int bufferSize = 1; bufferSize < 6; bufferSize++) {
+      List<Map<String, String>> lines = lines(
+        new ByteArrayInputStream(INPUT.getBytes(StandardCharsets.UTF_8)),
+        StandardCharsets.UTF_8, "\n", ";", bufferSize, true);
+      Assert.assertEquals(2, lines.size());
+      Assert.assertEquals("Jürgen", lines.get(0).get("name"));
+      Assert.assertEquals("München;Bayern", lines.get(0).get("city"));
+      Assert.assertEquals("Zoë", lines.get(1).get("name"));
+      Assert.assertEquals("Ærø", lines.get(1).get("city"));
+    }
+  }
+
+  @Test
+  public void testLatin1() {
+    List<Map<String, String>> lines = lines(
+      new ByteArrayInputStream(INPUT.getBytes(StandardCharsets.ISO_8859_1)),
+      StandardCharsets.ISO_8859_1, "\n", ";", 7, true);
+    Assert.assertEquals(2, lines.size());
+    Assert.assertEquals("München;Bayern", lines.get(0).get("city"));
+    Assert.assertEquals("Ærø", lines.get(1).get("city"));
+  }
+
+  @Test
+  public void testNotAsciiSeparatorInUtf8() {
+    String input = INPUT.replace(';', '§');
+    List<Map<String, String>> lines = lines(
+      new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+      StandardCharsets.UTF_8, "\n", "§", 3, true);
+    Assert.assertEquals("München§Bayern", lines.get(0).get("city"));
+    Assert.assertEquals("Zoë", lines.get(1).get("name"));
+  }
+
+  @Test
+  public void testSameResultAsDecodedInput() {
+    String folder = TestUtils.testResourceFolderFullPath(FileUtilsTest.FOLDER);
+    List<Map<String, String>> decoded = lines(
+      fileUtils().validFile(folder, CsvReaderFromFileTest.FILE),
+      StandardCharsets.UTF_8, "{EOL}", "||", 64, false);
+    List<Map<String, String>> notDecoded = lines(
+      fileUtils().validFile(folder, CsvReaderFromFileTest.FILE),
+      StandardCharsets.UTF_8, "{EOL}", "||", 64, true);
+    Assert.assertEquals(CsvReaderFromFileTest.EXPECTED_LINES_NUMBER, notDecoded.size());
+    Assert.assertEquals(decoded, notDecoded);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMultiByteEncodingIsNotSupported() {
+    CsvReader.builder()
+      .input(IOUtils.toInputStream(INPUT, StandardCharsets.UTF_16))
+      .encoding(StandardCharsets.UTF_16)
+      .byteScanning(true)
+      .build();
+  }
+}
@@ -0,0 +1,80 @@
+package com.savdev.commons.file;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class CsvReaderFilterTest {
+
+  static final String INPUT = "id,currency,amount\n" +
+    "1,EUR,10\n" +
+    "2,USD,\"20\n,x\"\n" +
+    "3,EUR,30\n" +
+    "4,GBP,40";
+
+  private static CsvReader.CsvReaderBuilder builder() {
+    return CsvReader.builder()
+      .input(IOUtils.toInputStream(INPUT, StandardCharsets.UTF_8))
+      .lineSeparator("\n")
+      .bufferSize(4);
+  }
+
+  private static List<String> ids(CsvReader reader) {
+    return reader.csvLines()
+      .map(m -> m.get("id"))
+      .collect(Collectors.toList());
+  }
+
+  @Test
+  public void testNotMatchingRecordsAreSkipped() {
+    Assert.assertEquals(
+      Arrays.asList("1", "3"),
+      ids(builder().where("currency", "EUR"::contentEquals).build()));
+  }
+
+  @Test
+  public void testSkippedRecordWithQuotedLineSeparator() {
+    List<Map<String, String>> lines = builder()
+      .where("id", v -> v.charAt(0) != '1')
+      .where("amount", v -> v.length() > 2)
+      .build()
+      .csvLines()
+      .collect(Collectors.toList());
+    Assert.assertEquals(1, lines.size());
+    Assert.assertEquals("20\n,x", lines.get(0).get("amount"));
+  }
+
+  @Test
+  public void testFiltersOfSameColumnMustAllMatch() {
+    Assert.assertEquals(
+      Collections.singletonList("4"),
+      ids(builder()
+        .where("currency", v -> v.charAt(0) != 'E')
+        .where("currency", v -> v.charAt(0) != 'U')
+        .build()));
+  }
+
+  @Test
+  public void testFilterWithRowsAndProjection() {
+    CsvRow row = builder()
+      .columns("amount")
+      .where("currency", "USD"::contentEquals)
+      .build()
+      .rows();
+    Assert.assertTrue(row.next());
+    Assert.assertEquals("20\n,x", row.get(0));
+    Assert.assertFalse(row.next());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotExistingFilterColumn() {
+    builder().where("price", v -> true).build().csvLines().count();
+  }
+}
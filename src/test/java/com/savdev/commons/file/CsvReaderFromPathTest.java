@@ -0,0 +1,88 @@
+package com.savdev.commons.file;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.savdev.commons.file.CsvTestData.dsvFile;
+import static com.savdev.commons.file.CsvTestData.dsvPath;
+
+public class CsvReaderFromPathTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testMappedFileBySmallWindows() {
+    List<Map<String, String>> expected = CsvReader.builder()
+      .input(dsvFile())
+      .columnSeparator("||")
+      .lineSeparator("{EOL}")
+      .build()
+      .csvLines()
+      .collect(Collectors.toList());
+    //every window size remaps the file a different number of times
+    for (int windowSize : new int[]{3, 64, 1000, 100_000}) {
+      try (CsvReader r = CsvReader.builder()
+        .input(dsvPath())
+        .columnSeparator("||")
+        .lineSeparator("{EOL}")
+        .bufferSize(windowSize)
+        .build()) {
+        Assert.assertTrue(r.storage.source instanceof MappedChunkSource);
+        Assert.assertEquals(expected, r.csvLines().collect(Collectors.toList()));
+      }
+    }
+  }
+
+  @Test
+  public void testMappedFileWithDefaultWindow() {
+    try (CsvReader r = CsvReader.builder()
+      .input(dsvPath())
+      .columnSeparator("||")
+      .lineSeparator("{EOL}")
+      .build()) {
+      Assert.assertEquals(CsvReaderFromFileTest.EXPECTED_LINES_NUMBER,
+        r.csvLines().count());
+    }
+  }
+
+  @Test
+  public void testEmptyFile() throws IOException {
+    Path empty = folder.newFile().toPath();
+    CsvReader r = CsvReader.builder()
+      .input(empty)
+      .build();
+    try {
+      r.csvLines().count();
+      Assert.fail("Header line is required");
+    } catch (IllegalArgumentException e) {
+      //expected
+    }
+  }
+
+  @Test
+  public void testNotByteScannableEncodingIsReadAsStream() throws IOException {
+    Path utf16 = folder.newFile().toPath();
+    Files.write(utf16, "a,b\n1,2\n3,4\n".getBytes(StandardCharsets.UTF_16));
+    try (CsvReader r = CsvReader.builder()
+      .input(utf16)
+      .encoding(StandardCharsets.UTF_16)
+      .lineSeparator("\n")
+      .build()) {
+      Assert.assertFalse(r.storage.bytes);
+      List<Map<String, String>> lines = r.csvLines().collect(Collectors.toList());
+      Assert.assertEquals(2, lines.size());
+      Assert.assertEquals("4", lines.get(1).get("b"));
+    }
+  }
+}
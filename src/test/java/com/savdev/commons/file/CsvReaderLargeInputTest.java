@@ -0,0 +1,226 @@
+package com.savdev.commons.file;
+
+import com.google.common.base.Strings;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class CsvReaderLargeInputTest {
+
+  static final int COLUMNS = 20;
+  static final int ROWS = 100_000;
+  //every LONG_FIELD_ROW row contains a quoted field, spanning many chunks
+  static final int LONG_FIELD_ROW = 25_000;
+  static final int LONG_FIELD_LENGTH = 4 * 1024 * 1024;
+  static final int SMALL_BUFFER_SIZE = 4096;
+  //chars of a long field, repeated
+  static final String LONG_FIELD_PATTERN = Strings.repeat("x", 99) + ",";
+  //a record, not fitting a chunk, is scanned again from its start
+  static final int MAX_INSPECTIONS_PER_CHAR = 2;
+
+  /**
+   * Storage keeps all chunks of a long field,
+   *  access to them must not depend on a number of chunks
+   */
+  @Test(timeout = 60_000)
+  public void testFieldHeavyInputWithLongQuotedFields() {
+    parse(ROWS, LONG_FIELD_ROW, LONG_FIELD_LENGTH);
+  }
+
+  /**
+   * 4 times more rows (and long fields) are 4 times more chars
+   *  run through the tokenizer
+   */
+  @Test
+  public void testInspectedCharsAreLinearInRows() {
+    assertLinear(parse(ROWS / 4, LONG_FIELD_ROW / 4, LONG_FIELD_LENGTH / 4));
+    assertLinear(parse(ROWS, LONG_FIELD_ROW / 4, LONG_FIELD_LENGTH / 4));
+  }
+
+  /**
+   * A 4 times longer field, spanning 4 times more chunks,
+   *  is not rescanned per chunk
+   */
+  @Test
+  public void testInspectedCharsAreLinearInFieldLength() {
+    assertLinear(parse(ROWS / 100, ROWS / 100, LONG_FIELD_LENGTH));
+    assertLinear(parse(ROWS / 100, ROWS / 100, 4 * LONG_FIELD_LENGTH));
+  }
+
+  static String longField(final int length) {
+    StringBuilder result = new StringBuilder(length);
+    while (result.length() < length) {
+      result.append(LONG_FIELD_PATTERN, 0,
+        Math.min(LONG_FIELD_PATTERN.length(), length - result.length()));
+    }
+    return result.toString();
+  }
+
+  private static void assertLinear(final GeneratedCsvInput input) {
+    Assert.assertTrue(
+      String.format("%d chars of input are inspected %d times",
+        input.written, input.inspected),
+      input.inspected <= MAX_INSPECTIONS_PER_CHAR * input.written);
+  }
+
+  /**
+   * Checks every row, their number and the last record
+   * @return the parsed input with the number of chars, inspected by the tokenizer
+   */
+  private static GeneratedCsvInput parse(final int rows, final int longFieldRow, final int longFieldLength) {
+    GeneratedCsvInput input = new GeneratedCsvInput(COLUMNS, rows, longFieldRow, longFieldLength);
+    CsvReader r = CsvReader.builder()
+      .input(input)
+      .encoding(StandardCharsets.US_ASCII)
+      .lineSeparator("\n")
+      .columnSeparator(",")
+      .bufferSize(SMALL_BUFFER_SIZE)
+      .build();
+    final int[] total = {0};
+    final int[] longFields = {0};
+    final List<Map<String, String>> last = new ArrayList<>(1);
+    r.csvLines().forEach(map -> {
+      Assert.assertEquals(COLUMNS, map.size());
+      Assert.assertEquals(String.valueOf(total[0]), map.get("c0"));
+      if (map.get("c1").length() == longFieldLength) {
+        longFields[0]++;
+      } else {
+        Assert.assertEquals("v" + total[0], map.get("c1"));
+      }
+      Assert.assertEquals("last", map.get("c" + (COLUMNS - 1)));
+      total[0]++;
+      last.clear();
+      last.add(map);
+    });
+    input.inspected = r.tokenizer.inspected;
+    Assert.assertEquals(rows, total[0]);
+    Assert.assertEquals(rows / longFieldRow, longFields[0]);
+    //the last row of the generated input ends with a long field, if rows % longFieldRow == 0
+    Map<String, String> lastRecord = last.get(0);
+    Assert.assertEquals(String.valueOf(rows - 1), lastRecord.get("c0"));
+    Assert.assertEquals(rows % longFieldRow == 0
+        ? longField(longFieldLength)
+        : "v" + (rows - 1),
+      lastRecord.get("c1"));
+    Assert.assertEquals("value" + (COLUMNS - 2), lastRecord.get("c" + (COLUMNS - 2)));
+    return input;
+  }
+
+  /**
+   * Generates csv data on the fly, without keeping it in memory:
+   *  c0,c1,...,cN
+   *  0,"v0",...,last
+   *  1,"v1",...,last
+   *  every longFieldRow row has a quoted c1 value of longFieldLength chars
+   */
+  static class GeneratedCsvInput extends InputStream {
+
+    final int columns;
+    final int rows;
+    final int longFieldRow;
+    final int longFieldLength;
+
+    int currentRow = -1; //header
+    byte[] line;
+    int linePosition;
+    //remaining chars of a long quoted field, written before the rest of the line
+    int longFieldRemaining;
+    long written; //number of generated chars
+    long inspected; //number of chars, inspected by the tokenizer
+
+    GeneratedCsvInput(
+      final int columns,
+      final int rows,
+      final int longFieldRow,
+      final int longFieldLength) {
+      this.columns = columns;
+      this.rows = rows;
+      this.longFieldRow = longFieldRow;
+      this.longFieldLength = longFieldLength;
+      this.line = nextLine();
+    }
+
+    @Override
+    public int read() {
+      byte[] b = new byte[1];
+      int c = read(b, 0, 1);
+      return c == -1 ? -1 : b[0];
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (line == null) {
+        return -1;
+      }
+      int written = 0;
+      while (written < len && line != null) {
+        if (linePosition < line.length) {
+          int c = Math.min(len - written, line.length - linePosition);
+          System.arraycopy(line, linePosition, b, off + written, c);
+          linePosition += c;
+          written += c;
+        } else if (longFieldRemaining > 0) {
+          int c = Math.min(len - written, longFieldRemaining);
+          for (int i = 0; i < c; i++) {
+            //includes column separator, must be ignored inside quotes
+            b[off + written + i] = (byte) LONG_FIELD_PATTERN.charAt(
+              (longFieldLength - longFieldRemaining + i) % LONG_FIELD_PATTERN.length());
+          }
+          longFieldRemaining -= c;
+          written += c;
+          if (longFieldRemaining == 0) {
+            line = restOfLongLine();
+          }
+        } else {
+          line = nextLine();
+        }
+      }
+      this.written += written;
+      return written;
+    }
+
+    private byte[] nextLine() {
+      linePosition = 0;
+      StringBuilder sb = new StringBuilder();
+      if (currentRow == -1) {
+        for (int i = 0; i < columns; i++) {
+          sb.append(i == 0 ? "" : ",").append("c").append(i);
+        }
+        sb.append("\n");
+        currentRow++;
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+      }
+      if (currentRow == rows) {
+        return null;
+      }
+      if (currentRow % longFieldRow == longFieldRow - 1) {
+        longFieldRemaining = longFieldLength;
+        return (currentRow + ",\"").getBytes(StandardCharsets.US_ASCII);
+      }
+      sb.append(currentRow).append(",\"v").append(currentRow).append("\"");
+      appendTail(sb);
+      currentRow++;
+      return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private byte[] restOfLongLine() {
+      linePosition = 0;
+      StringBuilder sb = new StringBuilder("\"");
+      appendTail(sb);
+      currentRow++;
+      return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private void appendTail(StringBuilder sb) {
+      for (int i = 2; i < columns - 1; i++) {
+        sb.append(",value").append(i);
+      }
+      sb.append(",last\n");
+    }
+  }
+}
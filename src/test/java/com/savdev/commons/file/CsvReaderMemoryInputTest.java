@@ -0,0 +1,125 @@
+package com.savdev.commons.file;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static com.savdev.commons.file.CsvTestData.dsvFile;
+import static com.savdev.commons.file.CsvTestData.lines;
+
+public class CsvReaderMemoryInputTest {
+
+  private static CsvReader.CsvReaderBuilder builder() {
+    return CsvReader.builder()
+      .columnSeparator("||")
+      .lineSeparator("{EOL}");
+  }
+
+  @Test
+  public void testSameResultAsStream() throws IOException {
+    List<Map<String, String>> expected = lines(builder().input(dsvFile()).build());
+    String csv = IOUtils.toString(dsvFile(), StandardCharsets.UTF_8);
+    byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+
+    Assert.assertEquals(expected, lines(builder().input(csv).build()));
+    Assert.assertEquals(expected,
+      lines(builder().input(new StringBuilder(csv)).build()));
+    char[] padded = ("xx" + csv + "yy").toCharArray();
+    Assert.assertEquals(expected,
+      lines(builder().input(padded, 2, csv.length()).build()));
+    Assert.assertEquals(expected,
+      lines(builder().input(ByteBuffer.wrap(bytes)).build()));
+    for (int bufferSize : new int[]{3, 64}) {
+      Assert.assertEquals(expected, lines(builder()
+        .input(ByteBuffer.wrap(bytes))
+        .bufferSize(bufferSize)
+        .build()));
+    }
+    ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 3);
+    direct.put(new byte[]{1, 2, 3}).put(bytes).flip();
+    direct.position(3);
+    Assert.assertEquals(expected, lines(builder().input(direct).build()));
+  }
+
+  @Test
+  public void testCharsAreNotCopied() {
+    char[] chars = "a,b\n1,2\n".toCharArray();
+    CsvReader reader = CsvReader.builder()
+      .input(chars, 0, chars.length)
+      .lineSeparator("\n")
+      .build();
+    CsvRow row = reader.rows();
+    Assert.assertTrue(row.next());
+    Assert.assertEquals("2", row.get("b"));
+    Assert.assertSame(chars, reader.storage.storage.get(0).buffer);
+  }
+
+  @Test
+  public void testCharsOfArrayPartAreNotCopied() {
+    //records before and after the part must not be read
+    char[] chars = "x,y\na,b\n1,2\n3,4\n".toCharArray();
+    CsvReader reader = CsvReader.builder()
+      .input(chars, 4, 8)
+      .lineSeparator("\n")
+      .build();
+    CsvRow row = reader.rows();
+    Assert.assertTrue(row.next());
+    Assert.assertEquals("1", row.get("a"));
+    Assert.assertEquals("2", row.get("b"));
+    Assert.assertSame(chars, reader.storage.storage.get(0).buffer);
+    Assert.assertFalse(row.next());
+  }
+
+  @Test
+  public void testBytesAreNotCopied() {
+    ByteBuffer bytes = ByteBuffer.wrap("a,b\n1,2\n".getBytes(StandardCharsets.UTF_8));
+    CsvReader reader = CsvReader.builder()
+      .input(bytes)
+      .lineSeparator("\n")
+      .build();
+    CsvRow row = reader.rows();
+    Assert.assertTrue(row.next());
+    Assert.assertEquals("2", row.get("b"));
+    Assert.assertSame(bytes.array(), reader.storage.storage.get(0).bytes.array());
+  }
+
+  @Test
+  public void testNotByteScannableEncoding() {
+    ByteBuffer bytes = ByteBuffer.wrap("a,b\n1,2\n".getBytes(StandardCharsets.UTF_16));
+    CsvReader reader = CsvReader.builder()
+      .input(bytes)
+      .encoding(StandardCharsets.UTF_16)
+      .lineSeparator("\n")
+      .build();
+    Assert.assertFalse(reader.storage.bytes);
+    Assert.assertEquals(ImmutableMap.of("a", "1", "b", "2"), lines(reader).get(0));
+  }
+
+  @Test
+  public void testResetDoesNotChangeInputArray() {
+    char[] chars = "a,b\n1,2\n".toCharArray();
+    CsvReader reader = CsvReader.builder()
+      .input(chars, 0, chars.length)
+      .lineSeparator("\n")
+      .build();
+    Assert.assertEquals(1, lines(reader).size());
+    reader.reset(new ByteArrayInputStream(
+      "c,d\n3,4\n".getBytes(StandardCharsets.UTF_8)));
+    Assert.assertEquals(ImmutableMap.of("c", "3", "d", "4"), lines(reader).get(0));
+    Assert.assertArrayEquals("a,b\n1,2\n".toCharArray(), chars);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOutOfArray() {
+    CsvReader.builder().input(new char[4], 2, 3);
+  }
+}
@@ -0,0 +1,111 @@
+package com.savdev.commons.file;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.savdev.commons.file.CsvTestData.dsvFile;
+
+public class CsvReaderPrefetchTest {
+
+  private static CsvReader.CsvReaderBuilder builder(InputStream input) {
+    return CsvReader.builder()
+      .input(input)
+      .columnSeparator("||")
+      .lineSeparator("{EOL}");
+  }
+
+  @Test
+  public void testSameResultAsWithoutPrefetch() {
+    List<Map<String, String>> expected = builder(dsvFile())
+      .build()
+      .csvLines()
+      .collect(Collectors.toList());
+    for (boolean byteScanning : new boolean[]{false, true}) {
+      for (int bufferSize : new int[]{3, 64, 100_000}) {
+        for (int depth : new int[]{1, 4}) {
+          try (CsvReader r = builder(dsvFile())
+            .bufferSize(bufferSize)
+            .byteScanning(byteScanning)
+            .prefetch(depth)
+            .build()) {
+            Assert.assertTrue(r.storage.source instanceof PrefetchChunkSource);
+            Assert.assertEquals(expected, r.csvLines().collect(Collectors.toList()));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testEarlyCloseStopsThread() throws InterruptedException {
+    StringBuilder csv = new StringBuilder("a||b{EOL}");
+    for (int i = 0; i < 10_000; i++) {
+      csv.append(i).append("||").append(i).append("{EOL}");
+    }
+    CsvReader r = builder(new ByteArrayInputStream(
+      csv.toString().getBytes(StandardCharsets.UTF_8)))
+      .bufferSize(16)
+      .prefetch(2)
+      .build();
+    PrefetchChunkSource source = (PrefetchChunkSource) r.storage.source;
+    try (Stream<Map<String, String>> lines = r.csvLines()) {
+      Assert.assertEquals(5, lines.limit(5).count());
+    }
+    source.thread.join(2000);
+    Assert.assertFalse(source.thread.isAlive());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testReadFailureIsReported() {
+    InputStream failing = new InputStream() {
+      int read = 0;
+
+      @Override
+      public int read() throws IOException {
+        if (read++ < 100) {
+          return 'a';
+        }
+        throw new IOException("Connection reset");
+      }
+    };
+    builder(failing)
+      .lineSeparator("\n")
+      .bufferSize(8)
+      .prefetch(2)
+      .build()
+      .csvLines()
+      .count();
+  }
+
+  @Test(timeout = 5000, expected = UncheckedIOException.class)
+  public void testRuntimeFailureIsReported() {
+    InputStream failing = new InputStream() {
+      int read = 0;
+
+      @Override
+      public int read() {
+        if (read++ < 100) {
+          return 'a';
+        }
+        throw new UncheckedIOException(new IOException("Connection reset"));
+      }
+    };
+    builder(failing)
+      .lineSeparator("\n")
+      .bufferSize(8)
+      .prefetch(2)
+      .build()
+      .csvLines()
+      .count();
+  }
+}
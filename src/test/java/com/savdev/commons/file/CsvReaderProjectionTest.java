@@ -0,0 +1,70 @@
+package com.savdev.commons.file;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class CsvReaderProjectionTest {
+
+  static final String INPUT = "a,b,c,d\n" +
+    "1,\"x,y\",3,4\n" +
+    "5,6,\"7\n8\",9\n";
+
+  private static CsvReader.CsvReaderBuilder builder() {
+    return CsvReader.builder()
+      .input(IOUtils.toInputStream(INPUT, StandardCharsets.UTF_8))
+      .lineSeparator("\n")
+      .bufferSize(3);
+  }
+
+  @Test
+  public void testSelectedByNames() {
+    List<Map<String, String>> lines = builder()
+      .columns("d", "b")
+      .build()
+      .csvLines()
+      .collect(Collectors.toList());
+    Assert.assertEquals(2, lines.size());
+    Assert.assertEquals(ImmutableMap.of("b", "x,y", "d", "4"), lines.get(0));
+    Assert.assertEquals(ImmutableMap.of("b", "6", "d", "9"), lines.get(1));
+  }
+
+  @Test
+  public void testRowContainsOnlySelectedColumns() {
+    CsvRow row = builder()
+      .columns(2, 0)
+      .build()
+      .rows();
+    Assert.assertEquals(2, row.columns());
+    Assert.assertEquals("c", row.columnName(0));
+    Assert.assertEquals(-1, row.columnIndex("b"));
+    Assert.assertTrue(row.next());
+    Assert.assertEquals("3", row.get(0));
+    Assert.assertEquals("1", row.get("a"));
+    Assert.assertTrue(row.next());
+    Assert.assertEquals("7\n8", row.get("c"));
+    Assert.assertEquals(ImmutableMap.of("a", "5", "c", "7\n8"), row.toMap());
+    Assert.assertFalse(row.next());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotExistingColumn() {
+    builder().columns("a", "e").build().csvLines().count();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testColumnIndexOutOfHeader() {
+    builder().columns(4).build().csvLines().count();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDuplicatedColumns() {
+    builder().columns("a", "a").build().csvLines().count();
+  }
+}
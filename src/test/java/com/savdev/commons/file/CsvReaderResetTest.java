@@ -0,0 +1,125 @@
+package com.savdev.commons.file;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static com.savdev.commons.file.CsvTestData.lines;
+
+public class CsvReaderResetTest {
+
+  private static InputStream input(String csv) {
+    return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static CsvReader.CsvReaderBuilder builder(String csv) {
+    return CsvReader.builder()
+      .input(input(csv))
+      .columnSeparator(",")
+      .lineSeparator("\n")
+      .bufferSize(8);
+  }
+
+  @Test
+  public void testSameHeaderIsReused() {
+    CsvReader reader = builder("a,b\n1,x\n2,y\n")
+      .columnType("a", CsvColumnType.INT)
+      .dictionaryColumn("b")
+      .build();
+    Assert.assertEquals(2, lines(reader).size());
+    CsvColumnMetadata a = reader.csvHeader.get(0);
+    CsvDictionary dictionary = reader.csvHeader.get(1).dictionary;
+
+    reader.reset(input("a,b\n3,x\n4,z\n"));
+    List<Map<String, String>> lines = lines(reader);
+    Assert.assertEquals(ImmutableMap.of("a", "3", "b", "x"), lines.get(0));
+    Assert.assertEquals(ImmutableMap.of("a", "4", "b", "z"), lines.get(1));
+    Assert.assertSame(a, reader.csvHeader.get(0));
+    Assert.assertSame(dictionary, reader.csvHeader.get(1).dictionary);
+    Assert.assertEquals(3, dictionary.size());
+  }
+
+  @Test
+  public void testDifferentHeaderIsRecalculated() {
+    CsvReader reader = builder("a,b\n1,2\n").build();
+    Assert.assertEquals(ImmutableMap.of("a", "1", "b", "2"), lines(reader).get(0));
+    reader.reset(input("c,d,e\n3,4,5\n"));
+    Assert.assertEquals(
+      ImmutableMap.of("c", "3", "d", "4", "e", "5"),
+      lines(reader).get(0));
+    Assert.assertEquals(3, reader.csvHeader.size());
+  }
+
+  @Test
+  public void testResetInTheMiddleOfInput() {
+    try (CsvReader reader = builder("a,b\n1,2\n3,4\n5,6\n").build()) {
+      CsvRow row = reader.rows();
+      Assert.assertTrue(row.next());
+      Assert.assertEquals("1", row.get("a"));
+      reader.reset(input("a,b\n7,8\n"));
+      row = reader.rows();
+      Assert.assertTrue(row.next());
+      Assert.assertEquals("8", row.get("b"));
+      Assert.assertFalse(row.next());
+    }
+  }
+
+  @Test
+  public void testResetWithPrefetchAndPool() {
+    ChunkBufferPool pool = new ChunkBufferPool(8, 64);
+    CsvReader reader = builder("a,b\n1,2\n3,4\n")
+      .bufferPool(pool)
+      .prefetch(2)
+      .build();
+    Assert.assertEquals(2, lines(reader).size());
+    long misses = pool.misses();
+    for (int i = 0; i < 10; i++) {
+      reader.reset(input("a,b\n1,2\n3,4\n"));
+      Assert.assertTrue(reader.storage.source instanceof PrefetchChunkSource);
+      Assert.assertEquals(2, lines(reader).size());
+    }
+    Assert.assertTrue(pool.hits() > pool.misses() - misses);
+  }
+
+  @Test
+  public void testResetOfMemoryInput() {
+    StringBuilder csv = new StringBuilder("a,b\n");
+    for (int i = 0; i < 1000; i++) {
+      csv.append(i).append(",x\n");
+    }
+    CsvReader reader = CsvReader.builder()
+      .input("a,b\n1,2\n")
+      .lineSeparator("\n")
+      .build();
+    Assert.assertEquals(1, lines(reader).size());
+    reader.reset(input(csv.toString()));
+    //the default stream buffer size, not the length of the previous input
+    Assert.assertEquals(32768, reader.storage.bufferSize);
+    Assert.assertEquals(1000, lines(reader).size());
+  }
+
+  @Test
+  public void testResetOfMemoryInputWithBufferSize() {
+    CsvReader reader = CsvReader.builder()
+      .input(ByteBuffer.wrap("a,b\n1,2\n".getBytes(StandardCharsets.UTF_8)))
+      .lineSeparator("\n")
+      .bufferSize(4)
+      .build();
+    Assert.assertEquals(1, lines(reader).size());
+    reader.reset(input("a,b\n3,4\n5,6\n"));
+    Assert.assertEquals(4, reader.storage.bufferSize);
+    Assert.assertEquals(ImmutableMap.of("a", "5", "b", "6"), lines(reader).get(1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullInput() {
+    builder("a\n1\n").build().reset(null);
+  }
+}
@@ -0,0 +1,100 @@
+package com.savdev.commons.file;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.savdev.commons.file.CsvTestData.dsvFile;
+
+public class CsvRecordTest {
+
+  private static CsvReader.CsvReaderBuilder builder(String csv) {
+    return CsvReader.builder()
+      .input(IOUtils.toInputStream(csv, StandardCharsets.UTF_8))
+      .lineSeparator("\n")
+      .bufferSize(3);
+  }
+
+  @Test
+  public void testSameResultAsCsvLines() {
+    for (int bufferSize : new int[]{3, 64, 100_000}) {
+      List<Map<String, String>> expected = CsvReader.builder()
+        .input(dsvFile())
+        .columnSeparator("||")
+        .lineSeparator("{EOL}")
+        .build()
+        .csvLines()
+        .collect(Collectors.toList());
+      List<Map<String, String>> actual = CsvReader.builder()
+        .input(dsvFile())
+        .columnSeparator("||")
+        .lineSeparator("{EOL}")
+        .bufferSize(bufferSize)
+        .build()
+        .records()
+        .map(CsvRow::toMap)
+        .collect(Collectors.toList());
+      Assert.assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  public void testOnlyAccessedFieldsAreTokenized() {
+    //the 1st record is tokenized completely to learn separators
+    List<Integer> fields = builder(CsvReaderProjectionTest.INPUT + "10,11,12,13\n")
+      .build()
+      .records()
+      .map(r -> {
+        r.get("b");
+        return r.reader.tokenizer.fields;
+      })
+      .collect(Collectors.toList());
+    Assert.assertEquals(Arrays.asList(4, 2, 2), fields);
+  }
+
+  @Test
+  public void testQuotedLineSeparatorInSkippedField() {
+    Assert.assertEquals(Arrays.asList("1", "5"), builder(CsvReaderProjectionTest.INPUT)
+      .build()
+      .records()
+      .map(r -> r.get(0))
+      .collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testAnyMatchAndFilter() {
+    String csv = "a,b\n1,x\n2,y\n3,z\n4,y\n";
+    Assert.assertTrue(builder(csv).build().records()
+      .anyMatch(r -> r.get("b").equals("z")));
+    List<Map<String, String>> lines = builder(csv)
+      .where("b", v -> v.toString().equals("y"))
+      .build()
+      .records()
+      .map(CsvRow::toMap)
+      .collect(Collectors.toList());
+    Assert.assertEquals(Arrays.asList(
+      ImmutableMap.of("a", "2", "b", "y"),
+      ImmutableMap.of("a", "4", "b", "y")), lines);
+  }
+
+  @Test
+  public void testTypedAccessors() {
+    Assert.assertEquals(10L, builder("a,b\n1,2\n3,4\n").build().records()
+      .mapToLong(r -> r.getLong("a") + r.getInt(1))
+      .sum());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testTooShortRecord() {
+    builder("a,b,c\n1,2,3\n4,5\n6,7,8\n").build().records()
+      .forEach(r -> r.get("c"));
+  }
+}
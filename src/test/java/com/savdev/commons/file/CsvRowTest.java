@@ -0,0 +1,182 @@
+package com.savdev.commons.file;
+
+import com.google.common.collect.ImmutableMap;
+import com.savdev.commons.TestUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.savdev.commons.file.FileUtils.fileUtils;
+
+public class CsvRowTest {
+
+  private static CsvReader reader(String input) {
+    return CsvReader.builder()
+      .input(IOUtils.toInputStream(input, StandardCharsets.UTF_8))
+      .lineSeparator("\n")
+      .bufferSize(4)
+      .build();
+  }
+
+  @Test
+  public void testRowIsReused() {
+    CsvRow row = reader("id,\"name\"\n1,\"a,b\"\n2,c\n").rows();
+    Assert.assertEquals(2, row.columns());
+    Assert.assertEquals(1, row.columnIndex("name"));
+    Assert.assertEquals(-1, row.columnIndex("unknown"));
+
+    Assert.assertTrue(row.next());
+    Assert.assertEquals("1", row.get(0));
+    Assert.assertEquals("a,b", row.get("name"));
+    Map<String, String> first = row.toMap();
+
+    Assert.assertTrue(row.next());
+    Assert.assertEquals("2", row.get("id"));
+    Assert.assertEquals("c", row.get(1));
+    //a copy is not changed by the cursor
+    Assert.assertEquals(ImmutableMap.of("id", "1", "name", "a,b"), first);
+    Assert.assertFalse(row.next());
+  }
+
+  @Test
+  public void testSameRecordsAsCsvLines() {
+    String folder = TestUtils.testResourceFolderFullPath(FileUtilsTest.FOLDER);
+    List<Map<String, String>> expected = CsvReader.builder()
+      .input(fileUtils().validFile(folder, CsvReaderFromFileTest.FILE))
+      .columnSeparator("||")
+      .lineSeparator("{EOL}")
+      .build()
+      .csvLines()
+      .collect(Collectors.toList());
+    CsvRow row = CsvReader.builder()
+      .input(fileUtils().validFile(folder, CsvReaderFromFileTest.FILE))
+      .columnSeparator("||")
+      .lineSeparator("{EOL}")
+      .build()
+      .rows();
+    List<Map<String, String>> actual = new ArrayList<>();
+    while (row.next()) {
+      actual.add(row.toMap());
+    }
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testSlicesAreSameAsValues() {
+    String input = "id;name;city\n" +
+      "1;\"a;b\";München\n" +
+      "22;;Ærø\n" +
+      "333;a value, longer than buffer;x\n";
+    for (boolean byteScanning : new boolean[]{false, true}) {
+      for (int bufferSize = 1; bufferSize < 40; bufferSize += 7) {
+        CsvRow row = CsvReader.builder()
+          .input(IOUtils.toInputStream(input, StandardCharsets.UTF_8))
+          .lineSeparator("\n")
+          .columnSeparator(";")
+          .bufferSize(bufferSize)
+          .byteScanning(byteScanning)
+          .build()
+          .rows();
+        int records = 0;
+        while (row.next()) {
+          for (int i = 0; i < row.columns(); i++) {
+            CharSequence slice = row.slice(i);
+            String value = row.get(i);
+            Assert.assertTrue(value.contentEquals(slice));
+            Assert.assertEquals(value, slice.toString());
+            Assert.assertEquals(value.hashCode(), slice.hashCode());
+          }
+          records++;
+        }
+        Assert.assertEquals(3, records);
+      }
+    }
+  }
+
+  @Test
+  public void testSliceIsWindowOverChunk() {
+    CsvRow row = CsvReader.builder()
+      .input(IOUtils.toInputStream("a,b\nvalue,x\n", StandardCharsets.ISO_8859_1))
+      .encoding(StandardCharsets.ISO_8859_1)
+      .lineSeparator("\n")
+      .byteScanning(true)
+      .build()
+      .rows();
+    Assert.assertTrue(row.next());
+    CharSequence slice = row.slice("a");
+    Assert.assertSame(slice, row.slice(0));
+    Assert.assertNotNull(((FieldSlice) slice).bytes);
+    Assert.assertEquals("alu", slice.subSequence(1, 4).toString());
+  }
+
+  @Test
+  public void testTypedAccessors() {
+    CsvRow row = CsvReader.builder()
+      .input(IOUtils.toInputStream(
+        "id,price,rate,day\n" +
+          "7,\"12.5\",0.25,2018-03-01\n" +
+          "-3,0.07,1e-2,1999-12-31\n",
+        StandardCharsets.UTF_8))
+      .lineSeparator("\n")
+      .bufferSize(5)
+      .columnType("id", CsvColumnType.LONG)
+      .decimalColumn("price", 2)
+      .dateColumn("day", "yyyy-MM-dd")
+      .build()
+      .rows();
+    Assert.assertTrue(row.next());
+    Assert.assertEquals(7, row.getInt("id"));
+    Assert.assertEquals(1250, row.getDecimal("price"));
+    Assert.assertEquals(125000, row.getDecimal("price", 4));
+    Assert.assertEquals(0.25, row.getDouble("rate"), 0);
+    Assert.assertEquals(LocalDate.of(2018, 3, 1).toEpochDay(), row.getEpochDay("day"));
+    Assert.assertTrue(row.next());
+    Assert.assertEquals(-3L, row.getLong(0));
+    Assert.assertEquals(7, row.getDecimal(1));
+    Assert.assertEquals(0.01, row.getDouble(2), 0);
+    Assert.assertEquals(LocalDate.of(1999, 12, 31).toEpochDay(), row.getEpochDay(3));
+    try {
+      row.getLong("day");
+      Assert.fail("Date column cannot be read as long");
+    } catch (IllegalStateException e) {
+      //expected
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDeclaredColumnNotInHeader() {
+    CsvReader.builder()
+      .input(IOUtils.toInputStream("a,b\n1,2\n", StandardCharsets.UTF_8))
+      .lineSeparator("\n")
+      .columnType("c", CsvColumnType.INT)
+      .build()
+      .rows()
+      .next();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNoCurrentRecord() {
+    reader("a,b\n1,2\n").rows().get(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownColumn() {
+    CsvRow row = reader("a,b\n1,2\n").rows();
+    Assert.assertTrue(row.next());
+    row.get("c");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testColumnIndexOutOfHeader() {
+    CsvRow row = reader("a,b\n1,2\n").rows();
+    Assert.assertTrue(row.next());
+    row.get(2);
+  }
+}
@@ -0,0 +1,155 @@
+package com.savdev.commons.file;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static com.savdev.commons.file.CsvTestData.quotedCsv;
+import static com.savdev.commons.file.CsvTestData.write;
+
+public class CsvSpliteratorTest {
+
+  static final int ROWS = 20_000;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  //quoted values contain more than 4 lines with column separators
+  private Path csvFile(int rows) throws IOException {
+    return quotedCsv(folder, rows, 8, true);
+  }
+
+  private static CsvReader reader(Path file, int bufferSize) {
+    return CsvReader.builder()
+      .input(file)
+      .lineSeparator("\n")
+      .bufferSize(bufferSize)
+      .build();
+  }
+
+  @Test
+  public void testSplitsReadEveryRecordOnce() throws IOException {
+    Path file = csvFile(ROWS);
+    List<Map<String, String>> expected;
+    try (CsvReader r = CsvReader.builder()
+      .input(Files.newInputStream(file))
+      .lineSeparator("\n")
+      .build()) {
+      expected = r.csvLines().collect(Collectors.toList());
+    }
+    Assert.assertEquals(ROWS, expected.size());
+
+    try (CsvReader r = reader(file, 4096)) {
+      CsvSpliterator root = new CsvSpliterator(r);
+      root.minSplitSize = 1024;
+      List<Spliterator<Map<String, String>>> splits = new ArrayList<>();
+      split(root, splits);
+      Assert.assertTrue(splits.size() > 100);
+      List<Map<String, String>> actual = new ArrayList<>();
+      for (Spliterator<Map<String, String>> s : splits) {
+        s.forEachRemaining(actual::add);
+      }
+      Assert.assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  public void testParallelStream() throws IOException {
+    Path file = csvFile(ROWS);
+    try (CsvReader r = reader(file, 1 << 16)) {
+      CsvSpliterator root = new CsvSpliterator(r);
+      root.minSplitSize = 4096;
+      List<Map<String, String>> lines = StreamSupport.stream(root, true)
+        .sorted(Comparator.comparingInt(m -> Integer.parseInt(m.get("id"))))
+        .collect(Collectors.toList());
+      Assert.assertEquals(ROWS, lines.size());
+      for (int i = 0; i < ROWS; i++) {
+        Assert.assertEquals(String.valueOf(i), lines.get(i).get("id"));
+      }
+      Assert.assertTrue(lines.get(3).get("text").startsWith("line 0, some text\nline 1,"));
+      Assert.assertTrue(lines.get(3).get("text").endsWith("text\n3"));
+      Assert.assertEquals("x\ny", lines.get(7).get("note"));
+    }
+  }
+
+  @Test
+  public void testParallelCsvLinesOfLargeFile() throws IOException {
+    Path file = csvFile(4 * ROWS);
+    Assert.assertTrue(Files.size(file) > 4 * CsvSpliterator.MIN_SPLIT_SIZE);
+    try (CsvReader r = reader(file, 1 << 16)) {
+      List<Map<String, String>> lines = r.csvLines().parallel()
+        .collect(Collectors.toList());
+      Assert.assertEquals(4 * ROWS, lines.size());
+      for (int i = 0; i < lines.size(); i++) {
+        Assert.assertEquals(String.valueOf(i), lines.get(i).get("id"));
+      }
+    }
+  }
+
+  @Test
+  public void testSplitReadersAreClosedByStream() throws IOException {
+    Path file = csvFile(ROWS);
+    CsvReader r = reader(file, 4096);
+    CsvSpliterator root = new CsvSpliterator(r);
+    root.minSplitSize = 4096;
+    List<Spliterator<Map<String, String>>> splits = new ArrayList<>();
+    split(root, splits);
+    //every split reads only its 1st record
+    for (Spliterator<Map<String, String>> s : splits) {
+      Assert.assertTrue(s.tryAdvance(record -> { }));
+    }
+    List<CsvReader> readers = new ArrayList<>(root.readers);
+    Assert.assertEquals(splits.size() - 1, readers.size());
+    StreamSupport.stream(root, false).onClose(root::close).close();
+    Assert.assertTrue(root.readers.isEmpty());
+    for (CsvReader reader : readers) {
+      Assert.assertFalse(((MappedChunkSource) reader.storage.source).channel.isOpen());
+    }
+  }
+
+  @Test
+  public void testFinishedSplitReaderIsNotKept() throws IOException {
+    Path file = csvFile(ROWS);
+    try (CsvReader r = reader(file, 4096)) {
+      CsvSpliterator root = new CsvSpliterator(r);
+      root.minSplitSize = 4096;
+      List<Spliterator<Map<String, String>>> splits = new ArrayList<>();
+      split(root, splits);
+      splits.get(splits.size() - 1).forEachRemaining(record -> { });
+      Assert.assertTrue(root.readers.isEmpty());
+    }
+  }
+
+  @Test
+  public void testSmallFileIsNotSplit() throws IOException {
+    Path file = write(folder, "a,b\n1,2\n");
+    try (CsvReader r = reader(file, 64)) {
+      Assert.assertNull(new CsvSpliterator(r).trySplit());
+      Assert.assertEquals(1, r.csvLines().count());
+    }
+  }
+
+  private static void split(
+    Spliterator<Map<String, String>> s,
+    List<Spliterator<Map<String, String>>> splits) {
+    Spliterator<Map<String, String>> prefix = s.trySplit();
+    if (prefix == null) {
+      splits.add(s);
+      return;
+    }
+    split(prefix, splits);
+    split(s, splits);
+  }
+}
@@ -0,0 +1,79 @@
+package com.savdev.commons.file;
+
+import com.savdev.commons.TestUtils;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.savdev.commons.file.FileUtils.fileUtils;
+
+/**
+ * Inputs of csv reader tests: the dsv test resource file
+ *  and generated csv files with quoted multi-line values
+ */
+final class CsvTestData {
+
+  static final String QUOTED_CSV_HEADER = "id,text,note\n";
+
+  private CsvTestData() {
+    throw new AssertionError("Utility class cannot be instantiated");
+  }
+
+  static Path dsvPath() {
+    return Paths.get(
+      TestUtils.testResourceFolderFullPath(FileUtilsTest.FOLDER),
+      CsvReaderFromFileTest.FILE);
+  }
+
+  static InputStream dsvFile() {
+    return fileUtils().validFile(
+      TestUtils.testResourceFolderFullPath(FileUtilsTest.FOLDER),
+      CsvReaderFromFileTest.FILE);
+  }
+
+  static List<Map<String, String>> lines(final CsvReader reader) {
+    return reader.csvLines().collect(Collectors.toList());
+  }
+
+  static Path write(final TemporaryFolder folder, final CharSequence csv) throws IOException {
+    Path file = folder.newFile().toPath();
+    Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  /**
+   * "id,text,note" csv, every 3rd text is quoted and has quotedLines lines
+   *  with column separators, every 7th note is a quoted value of 2 lines:
+   *  1,plain 1,n1
+   *  3,"line 0, some text\n...3",n3
+   */
+  static Path quotedCsv(
+    final TemporaryFolder folder,
+    final int rows,
+    final int quotedLines,
+    final boolean withHeader) throws IOException {
+    StringBuilder csv = new StringBuilder(withHeader ? QUOTED_CSV_HEADER : "");
+    for (int i = 0; i < rows; i++) {
+      csv.append(i).append(',');
+      if (i % 3 == 0) {
+        csv.append('"');
+        for (int line = 0; line < quotedLines; line++) {
+          csv.append("line ").append(line).append(", some text\n");
+        }
+        csv.append(i).append('"');
+      } else {
+        csv.append("plain ").append(i);
+      }
+      csv.append(',').append(i % 7 == 0 ? "\"x\ny\"" : "n" + i).append('\n');
+    }
+    return write(folder, csv);
+  }
+}
@@ -0,0 +1,136 @@
+package com.savdev.commons.file;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class CsvTokenizerTest {
+
+  private static CsvTokenizer tokenizer(
+    final String input,
+    final int bufferSize,
+    final String columnSeparator,
+    final String lineSeparator) {
+    return new CsvTokenizer(
+      new Storage(bufferSize,
+        IOUtils.toInputStream(input, StandardCharsets.UTF_8),
+        StandardCharsets.UTF_8),
+      columnSeparator,
+      lineSeparator);
+  }
+
+  private static void assertFields(CsvTokenizer t, String... expected) {
+    Assert.assertEquals(expected.length, t.fields);
+    for (int i = 0; i < expected.length; i++) {
+      Assert.assertEquals(expected[i], t.value(i));
+    }
+  }
+
+  @Test
+  public void testMultiCharSeparatorsSplitAcrossBuffers() {
+    //every separator is split between 1 char buffers
+    CsvTokenizer t = tokenizer("a||b|c{EOL}d||e||f{EOL}", 1, "||", "{EOL}");
+    Assert.assertTrue(t.nextRecord(CsvTokenizer.UNBOUNDED, true));
+    assertFields(t, "a", "b|c");
+    Assert.assertFalse(t.lastRecord);
+    Assert.assertTrue(t.nextRecord(CsvTokenizer.UNBOUNDED, true));
+    assertFields(t, "d", "e", "f");
+    Assert.assertFalse(t.nextRecord(CsvTokenizer.UNBOUNDED, true));
+  }
+
+  @Test
+  public void testQuotedFieldsWithSeparatorsInside() {
+    CsvTokenizer t = tokenizer(
+      "\"a,b\",\"c\nd\",\"\"\n\"e\",f\n", 4, ",", "\n");
+    Assert.assertTrue(t.nextRecord(3, true));
+    assertFields(t, "a,b", "c\nd", "");
+    Assert.assertTrue(t.fieldQuoted[0]);
+    Assert.assertTrue(t.nextRecord(3, true));
+    //quotes are recognised per field
+    assertFields(t, "e", "f");
+    Assert.assertTrue(t.fieldQuoted[0]);
+    Assert.assertFalse(t.fieldQuoted[1]);
+  }
+
+  @Test
+  public void testLastColumnIsFinishedOnlyByLineSeparator() {
+    CsvTokenizer t = tokenizer("a,b,c\nd,e", 32, ",", "\n");
+    Assert.assertTrue(t.nextRecord(2, true));
+    assertFields(t, "a", "b,c");
+    Assert.assertTrue(t.nextRecord(2, true));
+    assertFields(t, "d", "e");
+    Assert.assertTrue(t.lastRecord);
+  }
+
+  @Test
+  public void testQuotesAreKeptWithoutQuoting() {
+    CsvTokenizer t = tokenizer("\"a\",\"b\"\n", 32, ",", "\n");
+    Assert.assertTrue(t.nextRecord(CsvTokenizer.UNBOUNDED, false));
+    assertFields(t, "\"a\"", "\"b\"");
+  }
+
+  @Test
+  public void testNotAsciiSeparators() {
+    CsvTokenizer t = tokenizer("ä§ö¶ü§\"x§y\"¶", 3, "§", "¶");
+    Assert.assertTrue(t.nextRecord(2, true));
+    assertFields(t, "ä", "ö");
+    Assert.assertTrue(t.nextRecord(2, true));
+    assertFields(t, "ü", "x§y");
+    Assert.assertFalse(t.nextRecord(2, true));
+  }
+
+  @Test
+  public void testOverlappingSeparatorPrefixes() {
+    //a partial "||" match must not hide the line separator "|#"
+    CsvTokenizer t = tokenizer("a|#b||c|#", 2, "||", "|#");
+    Assert.assertTrue(t.nextRecord(CsvTokenizer.UNBOUNDED, true));
+    assertFields(t, "a");
+    Assert.assertTrue(t.nextRecord(CsvTokenizer.UNBOUNDED, true));
+    assertFields(t, "b", "c");
+  }
+
+  @Test
+  public void testLearnedPatternWithFallback() {
+    CsvTokenizer t = tokenizer(
+      "\"a\",b,c\n\"d\",e,f\ng,h,i\n\"j\",\"k,l\",m\n\"n\",o\n\"p\",q,r", 64, ",", "\n");
+    Assert.assertTrue(t.nextRecord(3, true));
+    t.learn(3);
+    Assert.assertArrayEquals(new boolean[]{true, false, false}, t.learnedQuoted);
+    //by the learned pattern:
+    Assert.assertTrue(t.nextRecord(3, true));
+    assertFields(t, "d", "e", "f");
+    //quoted differently:
+    Assert.assertTrue(t.nextRecord(3, true));
+    assertFields(t, "g", "h", "i");
+    Assert.assertTrue(t.nextRecord(3, true));
+    assertFields(t, "j", "k,l", "m");
+    //too short:
+    Assert.assertTrue(t.nextRecord(3, true));
+    assertFields(t, "n", "o");
+    //without the line separator at the end of input:
+    Assert.assertTrue(t.nextRecord(3, true));
+    assertFields(t, "p", "q", "r");
+    Assert.assertTrue(t.lastRecord);
+  }
+
+  @Test
+  public void testLearnedPatternAcrossChunks() {
+    StringBuilder input = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      input.append(i).append("||\"").append(i).append("{EOL}\"{EOL}");
+    }
+    for (int bufferSize : new int[]{1, 7, 64}) {
+      CsvTokenizer t = tokenizer(input.toString(), bufferSize, "||", "{EOL}");
+      for (int i = 0; i < 100; i++) {
+        Assert.assertTrue(t.nextRecord(2, true));
+        assertFields(t, String.valueOf(i), i + "{EOL}");
+        if (i == 0) {
+          t.learn(2);
+        }
+      }
+      Assert.assertFalse(t.nextRecord(2, true));
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package com.savdev.commons.file;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Random;
+
+public class FieldDecoderTest {
+
+  @Test
+  public void testLong() {
+    for (String value : new String[]{"0", "-0", "+7", "123456789",
+      String.valueOf(Long.MAX_VALUE), String.valueOf(Long.MIN_VALUE)}) {
+      Assert.assertEquals(Long.parseLong(value), FieldDecoder.parseLong(value));
+    }
+    for (String value : new String[]{"", "-", "1a", "1.0", "9223372036854775808",
+      "-9223372036854775809"}) {
+      try {
+        FieldDecoder.parseLong(value);
+        Assert.fail(value);
+      } catch (NumberFormatException e) {
+        //expected
+      }
+    }
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testIntOverflow() {
+    FieldDecoder.parseInt("2147483648");
+  }
+
+  @Test
+  public void testDoubleSameAsParseDouble() {
+    Random random = new Random(42);
+    for (int i = 0; i < 10_000; i++) {
+      String value = i % 2 == 0
+        ? String.valueOf(random.nextDouble() * Math.pow(10, random.nextInt(30) - 15))
+        : String.format("%d.%03d", random.nextInt(100_000) - 50_000, random.nextInt(1000));
+      Assert.assertEquals(value, Double.parseDouble(value),
+        FieldDecoder.parseDouble(value), 0);
+    }
+    for (String value : new String[]{"1e3", "-2.5E-3", ".5", "7.", "1e400",
+      "12345678901234567890", "NaN"}) {
+      Assert.assertEquals(value, Double.parseDouble(value),
+        FieldDecoder.parseDouble(value), 0);
+    }
+  }
+
+  @Test
+  public void testDecimal() {
+    Assert.assertEquals(1234, FieldDecoder.parseDecimal("12.34", 2));
+    Assert.assertEquals(-1200, FieldDecoder.parseDecimal("-12", 2));
+    Assert.assertEquals(1230, FieldDecoder.parseDecimal("12.3", 2));
+    Assert.assertEquals(1230, FieldDecoder.parseDecimal("12.3000", 2));
+    Assert.assertEquals(5, FieldDecoder.parseDecimal(".05", 2));
+  }
+
+  @Test(expected = ArithmeticException.class)
+  public void testDecimalMoreDigitsThanScale() {
+    FieldDecoder.parseDecimal("12.345", 2);
+  }
+
+  @Test
+  public void testEpochDay() {
+    LocalDate date = LocalDate.of(1890, 1, 1);
+    while (date.getYear() < 2100) {
+      Assert.assertEquals(date.toEpochDay(),
+        FieldDecoder.parseEpochDay(date.toString(), "yyyy-MM-dd"));
+      date = date.plusDays(17);
+    }
+    Assert.assertEquals(LocalDate.of(2016, 2, 29).toEpochDay(),
+      FieldDecoder.parseEpochDay("29.02.2016", "dd.MM.yyyy"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotExistingDate() {
+    FieldDecoder.parseEpochDay("2017-02-29", "yyyy-MM-dd");
+  }
+}
@@ -0,0 +1,154 @@
+package com.savdev.commons.file;
+
+import com.google.common.collect.ImmutableMap;
+import com.savdev.commons.TestUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.savdev.commons.file.FileUtils.fileUtils;
+
+public class OffHeapCsvTableTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static CsvReader dsvReader() {
+    return CsvReader.builder()
+      .input(fileUtils().validFile(
+        TestUtils.testResourceFolderFullPath(FileUtilsTest.FOLDER),
+        CsvReaderFromFileTest.FILE))
+      .columnSeparator("||")
+      .lineSeparator("{EOL}")
+      .build();
+  }
+
+  private static CsvReader reader(String csv) {
+    return CsvReader.builder().input(csv).lineSeparator("\n").build();
+  }
+
+  private static List<Map<String, String>> rows(OffHeapCsvTable table) {
+    return table.stream().map(OffHeapCsvTable.Row::toMap).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testSameRowsAsReader() {
+    List<Map<String, String>> expected = dsvReader().csvLines().collect(Collectors.toList());
+    try (OffHeapCsvTable table = OffHeapCsvTable.builder().arenaSize(1024).build()) {
+      Assert.assertEquals(expected.size(), table.append(dsvReader()));
+      Assert.assertEquals(expected, rows(table));
+      Assert.assertTrue(table.allocated() > 1024);
+    }
+  }
+
+  @Test
+  public void testMappedTempFile() throws IOException {
+    File directory = folder.newFolder();
+    StringBuilder csv = new StringBuilder("id,name\n");
+    for (int i = 0; i < 1000; i++) {
+      csv.append(i).append(",name").append(999 - i).append('\n');
+    }
+    OffHeapCsvTable table = OffHeapCsvTable.builder()
+      .arenaSize(1024)
+      .tempDirectory(directory.toPath())
+      .build();
+    Assert.assertEquals(1000, table.append(reader(csv.toString())));
+    List<OffHeapCsvTable.Row> sorted = table.stream()
+      .sorted(Comparator.comparing(row -> row.get("name")))
+      .collect(Collectors.toList());
+    Assert.assertEquals("999", sorted.get(0).get(0));
+    Assert.assertEquals(999, sorted.get(0).index());
+    table.close();
+    Assert.assertEquals(0, directory.list().length);
+  }
+
+  @Test
+  public void testAppendAndUnicode() {
+    try (OffHeapCsvTable table = OffHeapCsvTable.builder().build()) {
+      table.append(reader("a,b\nпривет,😀\n"));
+      table.append(reader("a,b\n,x\n"));
+      Assert.assertEquals(2, table.rows());
+      Assert.assertEquals(ImmutableMap.of("a", "привет", "b", "😀"),
+        table.row(0).toMap());
+      Assert.assertEquals("", table.row(1).get("a"));
+      Assert.assertEquals(1, table.columnIndex("b"));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownColumn() {
+    try (OffHeapCsvTable table = OffHeapCsvTable.builder().build()) {
+      table.append(reader("a,b\n1,2\n"));
+      table.row(0).get("c");
+    }
+  }
+
+  @Test
+  public void testLongFieldAfterShortOnes() {
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      value.append((char) ('a' + i % 26));
+    }
+    try (OffHeapCsvTable table = OffHeapCsvTable.builder().build()) {
+      table.append(reader("a,b\n1," + value + "\n2,x\n"));
+      Assert.assertEquals("1", table.row(0).get(0));
+      Assert.assertEquals(value.toString(), table.row(0).get("b"));
+      Assert.assertEquals("x", table.row(1).get("b"));
+      table.append(reader("a,b\n3,y\n"));
+      Assert.assertEquals(ImmutableMap.of("a", "3", "b", "y"), table.row(2).toMap());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDifferentColumns() {
+    try (OffHeapCsvTable table = OffHeapCsvTable.builder().build()) {
+      table.append(reader("a,b\n1,2\n"));
+      table.append(reader("a,c\n1,2\n"));
+    }
+  }
+
+  @Test
+  public void testMaxSize() {
+    try (OffHeapCsvTable table = OffHeapCsvTable.builder()
+      .arenaSize(64)
+      .maxSize(256)
+      .build()) {
+      StringBuilder csv = new StringBuilder("a,b\n");
+      for (int i = 0; i < 100; i++) {
+        csv.append(i).append(",value").append(i).append('\n');
+      }
+      try {
+        table.append(reader(csv.toString()));
+        Assert.fail();
+      } catch (IllegalStateException e) {
+        Assert.assertTrue(e.getMessage().contains("max size = '256'"));
+      }
+      Assert.assertTrue(table.allocated() <= 256);
+      Assert.assertTrue(table.rows() > 0);
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testRowExceedsArena() {
+    try (OffHeapCsvTable table = OffHeapCsvTable.builder().arenaSize(16).build()) {
+      table.append(reader("a,b\n1,a long value of the row\n"));
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testClosed() {
+    OffHeapCsvTable table = OffHeapCsvTable.builder().build();
+    table.append(reader("a\n1\n"));
+    OffHeapCsvTable.Row row = table.row(0);
+    table.close();
+    row.get(0);
+  }
+}